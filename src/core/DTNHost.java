@@ -4,14 +4,14 @@
  */
 package core;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import input.NodeFailureSchedule;
+
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 import movement.MovementModel;
 import movement.Path;
@@ -35,6 +35,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	private double speed;
 	private double nextTimeToMove;
 	private String name;
+	/** role of the host, resolved from the name */
+	private HostRole role;
+	/** number at the end of the name (or -1 if there's none) */
+	private int nameId;
+	/** is the host in the sink host range of its group */
+	private boolean sink;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
@@ -64,6 +70,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	private NodeInformation nodeInformation;
 	//My code end
 	private ArrayList<String> currentNodeNeighborList;
+	/** addresses of the hosts in the current neighbor list */
+	private BitSet neighborAddresses = new BitSet();
 	private ArrayList<DTNHost> failedNodeList;
 
 	private int isGrnRouter = 1;
@@ -109,6 +117,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.movement = mmProto.replicate();
 		this.movement.setComBus(comBus);
 		setRouter(mRouterProto.replicate());
+		setNameInfo();
 
 		this.location = movement.getInitialLocation();
 
@@ -238,6 +247,44 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		setNameInfo();
+	}
+
+	/**
+	 * Resolves the role, name ID and sink status of the host from its name
+	 * and the sink host range of its router
+	 */
+	private void setNameInfo() {
+		this.role = HostRole.of(this.name);
+		this.nameId = parseAddress(this.name);
+		this.sink = this.router != null && this.router.isSinkId(this.nameId);
+	}
+
+	/**
+	 * Returns the role of the host
+	 * @return The role resolved from the host's name
+	 */
+	public HostRole getRole() {
+		return this.role;
+	}
+
+	/**
+	 * Returns the group-local ID of the host, i.e., the number at the end of
+	 * its name. This is the ID used in the sink host ranges and failed node
+	 * lists.
+	 * @return The name ID or -1 if the name doesn't end with a number
+	 */
+	public int getNameId() {
+		return this.nameId;
+	}
+
+	/**
+	 * Returns true if the host is a sink host of its group
+	 * (see setting <CODE>sinkHosts</CODE> of {@link MessageRouter})
+	 * @return True if the host is a sink
+	 */
+	public boolean isSink() {
+		return this.sink;
 	}
 
 	/**
@@ -366,6 +413,36 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router.update();
 	}
 
+	/**
+	 * Updates the locations of this host's network interfaces in the
+	 * connectivity optimizers. In the parallel update mode this is done for
+	 * all hosts before any of them is prepared for the update.
+	 */
+	public void updateInterfaceLocations() {
+		if (!isActive()) {
+			return;
+		}
+		for (NetworkInterface i : net) {
+			i.updateLocation();
+		}
+	}
+
+	/**
+	 * Prepares the next {@link #update(boolean)} of this host by doing the
+	 * read-only part of the network interface updates. Can be called
+	 * concurrently for all hosts.
+	 * @param simulateConnections Should network layer be updated too
+	 * @see NetworkInterface#prepareUpdate()
+	 */
+	public void prepareUpdate(boolean simulateConnections) {
+		if (!isActive() || !simulateConnections) {
+			return;
+		}
+		for (NetworkInterface i : net) {
+			i.prepareUpdate();
+		}
+	}
+
 	/**
 	 * Moves the node towards the next waypoint or waits if it is
 	 * not time to move yet
@@ -588,7 +665,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	public void setRelayExemplarMap(ArrayList<DTNHost> relayExemplarList) {
-		if(this.name.toString().startsWith("n") && 
+		if(this.role == HostRole.SURVIVOR && 
 				relayExemplarList.size()> this.relayExemplarList.size()){
 			System.out.println("The prev and current exemplar list: "+ this.name+" "+ 
 				this.relayExemplarList+"\n"+relayExemplarList);
@@ -601,7 +678,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	
 	public int getClusterNumber(){
 		String clusterNum = "-1";
-		if(this.name.startsWith("n")){
+		if(this.role == HostRole.SURVIVOR){
 			String[] parts = this.name.split("_");
 			clusterNum = parts[0].substring(1);
 			//System.out.println("The cluster Num: "+clusterNum);
@@ -733,52 +810,82 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	//Bio-DRN Functions
+	/**
+	 * Sets the hosts this host is allowed to forward messages to. The names
+	 * are also resolved to network addresses for {@link #isNeighbor(DTNHost)}.
+	 * @param currentNodeNeighborList Names of the neighbor hosts
+	 */
 	public void setNeighborList(ArrayList<String> currentNodeNeighborList) {
 		this.currentNodeNeighborList = currentNodeNeighborList;
 		
+		BitSet addresses = new BitSet();
+		if (currentNodeNeighborList != null) {
+			List<DTNHost> hosts = SimScenario.getInstance().getHosts();
+			for (String name : currentNodeNeighborList) {
+				int address = parseAddress(name);
+				/* names are groupId + address; ignore names of no host */
+				if (address >= 0 && address < hosts.size() &&
+						hosts.get(address).toString().equals(name)) {
+					addresses.set(address);
+				}
+			}
+		}
+		this.neighborAddresses = addresses;
 	}
 	
 	public List<String> getNeighborList(){
 		return this.currentNodeNeighborList;
 	}
 	
+	/**
+	 * Returns true if the other host is in the current neighbor list of
+	 * this host.
+	 * @param otherHost The other host
+	 * @return True if this host may forward messages to the other host
+	 */
+	public boolean isNeighbor(DTNHost otherHost) {
+		return this.neighborAddresses.get(otherHost.getAddress());
+	}
+	
+	/**
+	 * Returns the addresses of the hosts in the current neighbor list. The
+	 * returned set must not be modified.
+	 * @return The neighbor addresses
+	 */
+	public BitSet getNeighborAddresses() {
+		return this.neighborAddresses;
+	}
+	
+	/**
+	 * Parses the address part (trailing digits) of a host name
+	 * @param name The host name
+	 * @return The address or -1 if the name doesn't end with a number
+	 */
+	private static int parseAddress(String name) {
+		int start = name.length();
+		while (start > 0 && Character.isDigit(name.charAt(start - 1))) {
+			start--;
+		}
+		if (start == name.length() || name.length() - start > 9) {
+			return -1;
+		}
+		return Integer.parseInt(name.substring(start));
+	}
+	
+	/**
+	 * Returns the names of all the nodes that have failed by the given time
+	 * according to the failure schedule of the run.
+	 * @param simTime The time of the failed node list line
+	 * @return The failed nodes (empty if there's no schedule or no line for
+	 * the time)
+	 * @see NodeFailureSchedule
+	 */
 	public ArrayList<String> getFailedNodeList(int simTime){
-		int noOfHosts = SimScenario.getInstance().getHosts().size();
-		File inFile = new File("/Users/vijay/BioDRNICDCSWorkSpace/ONEICDCS/src/FailedNodeList/F_C"+String.valueOf(noOfHosts)+".txt");
-//      File inFile = new File("/mounts/u-amo-d0/guest/vksh224/BioDRNICDCSWorkSpace/EdgeRewiringONE/src/FailedNodeList/F_C" + String.valueOf(noOfHosts)+".txt");
-
-		ArrayList<String> allLines = new ArrayList<String>();
-		
-		Scanner scanner = null;
-		try {
-				scanner = new Scanner(inFile);
-			} catch (FileNotFoundException e) {
-				System.out.println("Couldn't find external movement input " +
-						"file " + inFile);
-			}
-		
-		//read all lines
-		while(scanner.hasNextLine()){
-			String currentLine = scanner.nextLine();
-			//System.out.println("Here " + currentLine );
-			allLines.add(currentLine);
-		}	
-			
-		ArrayList<String> failedNodeList = new ArrayList<String>();
-		
-		for(int i =0; i < allLines.size(); i++){
-			Scanner lineScan = new Scanner(allLines.get(i));
-			Double time = lineScan.nextDouble();
-			
-			if(simTime == time){
-				while(lineScan.hasNext()){
-					int value = lineScan.nextInt();
-					//System.out.print(value +" ");
-					failedNodeList.add("n" + value);
-				}
-			}	
+		NodeFailureSchedule schedule = NodeFailureSchedule.getSchedule();
+		if (schedule == null) {
+			return new ArrayList<String>();
 		}
-		return failedNodeList;
+		return schedule.getFailedNodeList(simTime);
 	}
 	
 }
@@ -5,9 +5,17 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import ui.DTNSimTextUI;
 
@@ -20,12 +28,22 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the number of runs in batch mode,
+	 * the runs are executed in parallel child JVMs. The option must be
+	 * followed by the number of parallel runs. The JVM options, such as the
+	 * heap size (<code>-Xmx</code>), apply to every child JVM, so the memory
+	 * use is multiplied by the number of parallel runs. */
+	public static final String PARALLEL_FLAG = "-p";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
 	public static final String RESET_METHOD_NAME = "reset";
 	/** List of class names that should be reset between batch runs */
 	private static List<Class<?>> resetList = new ArrayList<Class<?>>();
+	/** Number of finished parallel batch runs */
+	private static int nrofDoneRuns;
+	/** Number of failed parallel batch runs */
+	private static int nrofFailedRuns;
 	
 	/**
 	 * Starts the user interface with given arguments.
@@ -37,6 +55,9 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
+	 * In batch mode, the number of runs can be followed by 
+	 * {@link #PARALLEL_FLAG} and the number of runs to execute in parallel
+	 * (e.g., <code>-b 1:10 -p 4 settings.txt</code>).
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -45,6 +66,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofWorkers = 1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -58,6 +80,10 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                    if (args.length > 3 && args[2].equals(PARALLEL_FLAG)) {
+                        nrofWorkers = parseNrofWorkers(args[3]);
+                        firstConfIndex = 4;
+                    }
                 }
 			}
 			else { /* GUI mode */				
@@ -76,7 +102,10 @@ public class DTNSim {
 		
 		initSettings(confFiles, firstConfIndex);
 		
-		if (batchMode) {
+		if (batchMode && nrofWorkers > 1) {
+			runParallelBatch(nrofRuns, nrofWorkers, confFiles, firstConfIndex);
+		}
+		else if (batchMode) {
 			long startTime = System.currentTimeMillis();
 			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
 				print("Run " + (i+1) + "/" + nrofRuns[1]);
@@ -93,6 +122,150 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs the batch runs in parallel, each in its own child JVM that is
+	 * started with the same class path, JVM options and settings files, and
+	 * the run index of the run. This way the static state of the simulator
+	 * is not shared between the runs, and the results and report files are
+	 * the same as in a sequential batch. Output of the runs is prefixed with
+	 * the run number. Debugger and agent options are not passed to the child
+	 * JVMs (see {@link #getChildJvmArguments()}).
+	 * @param nrofRuns The first and (last_run_index - 1) of the runs
+	 * @param nrofWorkers Number of runs to execute in parallel
+	 * @param confFiles The command line arguments
+	 * @param firstConfIndex Index of the first settings file argument
+	 */
+	private static void runParallelBatch(int[] nrofRuns, int nrofWorkers,
+			String[] confFiles, int firstConfIndex) {
+		final int total = nrofRuns[1] - nrofRuns[0];
+		final long startTime = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(nrofWorkers, total));
+		nrofDoneRuns = 0;
+		nrofFailedRuns = 0;
+
+		List<String> jvmArguments = getChildJvmArguments();
+		print("Running " + total + " runs, " + nrofWorkers + " in parallel");
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator +
+					"bin" + File.separator + "java");
+			command.addAll(jvmArguments);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(DTNSim.class.getName());
+			command.add(BATCH_MODE_FLAG);
+			command.add((i+1) + RANGE_DELIMETER + (i+1));
+			for (int j=firstConfIndex; j<confFiles.length; j++) {
+				command.add(confFiles[j]);
+			}
+			final int run = i+1;
+			final int lastRun = nrofRuns[1];
+
+			executor.execute(new Runnable() {
+				public void run() {
+					long runStart = System.currentTimeMillis();
+					boolean ok = runChildProcess(command, "[" + run + "] ");
+					double runTime = (System.currentTimeMillis()-runStart)/1000.0;
+					batchRunDone(run, lastRun, ok, runTime, total, startTime);
+				}
+			});
+		}
+
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted while waiting for the runs");
+			System.exit(-1);
+		}
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("---\nAll done in " + String.format("%.2f", duration) + "s");
+		if (nrofFailedRuns > 0) {
+			System.err.println(nrofFailedRuns + " run(s) failed");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Returns the JVM options of this JVM that are passed to the child JVMs
+	 * of a parallel batch. Debugger and agent options are left out, since
+	 * all the children would try to bind the same debug port or load the
+	 * same agent.
+	 * @return The JVM options for the child JVMs
+	 */
+	private static List<String> getChildJvmArguments() {
+		String[] excluded = {"-agentlib:", "-agentpath:", "-javaagent:",
+				"-Xrunjdwp", "-Xdebug"};
+		List<String> arguments = new ArrayList<String>();
+		for (String arg : ManagementFactory.getRuntimeMXBean().
+				getInputArguments()) {
+			boolean include = true;
+			for (String prefix : excluded) {
+				if (arg.startsWith(prefix)) {
+					include = false;
+					break;
+				}
+			}
+			if (include) {
+				arguments.add(arg);
+			}
+		}
+		return arguments;
+	}
+
+	/**
+	 * Runs a child process and prints its output with a prefix
+	 * @param command The command line of the process
+	 * @param prefix Prefix for the output lines
+	 * @return True if the process exited normally, false if not
+	 */
+	private static boolean runChildProcess(List<String> command,
+			String prefix) {
+		try {
+			ProcessBuilder pb = new ProcessBuilder(command);
+			pb.redirectErrorStream(true);
+			Process p = pb.start();
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(p.getInputStream()));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				print(prefix + line);
+			}
+			return p.waitFor() == 0;
+		} catch (IOException e) {
+			System.err.println(prefix + "Failed to run: " + e);
+			return false;
+		} catch (InterruptedException e) {
+			System.err.println(prefix + "Interrupted: " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Prints the progress of a parallel batch when a run has finished
+	 * @param run Number of the finished run
+	 * @param lastRun Number of the last run of the batch
+	 * @param ok Did the run finish successfully
+	 * @param runTime Wall clock time of the run (seconds)
+	 * @param total Total number of runs in the batch
+	 * @param startTime Start time of the batch (milliseconds)
+	 */
+	private static synchronized void batchRunDone(int run, int lastRun,
+			boolean ok, double runTime, int total, long startTime) {
+		nrofDoneRuns++;
+		if (!ok) {
+			nrofFailedRuns++;
+		}
+		double elapsed = (System.currentTimeMillis() - startTime)/1000.0;
+		double eta = elapsed / nrofDoneRuns * (total - nrofDoneRuns);
+		print("Run " + run + "/" + lastRun + (ok ? " done" : " FAILED") +
+				" in " + String.format("%.2f", runTime) + "s (" +
+				nrofDoneRuns + "/" + total + " finished, ETA " +
+				String.format("%.0f", eta) + "s)");
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -216,6 +389,26 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of parallel runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of parallel runs
+	 */
+	private static int parseNrofWorkers(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			/* handled below */
+		}
+		if (val < 1) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of parallel runs");
+			System.exit(-1);
+		}
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Role of a host in a disaster response network scenario. The role is given
+ * by the prefix of the host's name (i.e., the group ID of its group) and is
+ * resolved once, when the host is created or renamed, so that routers and
+ * reports can classify hosts without string comparisons.
+ */
+public enum HostRole {
+	/** Survivor (DTN) nodes; group ID prefix "n" */
+	SURVIVOR("n"),
+	/** Data mules; group ID prefix "CD" */
+	DATA_MULE("CD"),
+	/** Coordination center; group ID prefix "CS" */
+	COORDINATION_CENTER("CS"),
+	/** Control station of the hierarchical routers; group ID prefix
+	 * "control_station" */
+	CONTROL_STATION("control_station"),
+	/** Database hosts; group ID prefix "DB" */
+	DATABASE("DB"),
+	/** Auxiliary database hosts; group ID prefix "ADB" */
+	AUX_DATABASE("ADB"),
+	/** Hosts of group ID prefix "G" */
+	GROUP_G("G"),
+	/** Hosts whose name doesn't match any other role */
+	OTHER("");
+
+	/** Cached values() array */
+	private static final HostRole[] ROLES = values();
+
+	private final String prefix;
+
+	private HostRole(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Returns the host name prefix of the role
+	 * @return The prefix (empty for {@link #OTHER})
+	 */
+	public String getPrefix() {
+		return this.prefix;
+	}
+
+	/**
+	 * Resolves the role of a host from its name
+	 * @param name Name of the host
+	 * @return The role whose prefix the name starts with, or {@link #OTHER}
+	 */
+	public static HostRole of(String name) {
+		for (HostRole r : ROLES) {
+			if (r != OTHER && name.startsWith(r.prefix)) {
+				return r;
+			}
+		}
+		return OTHER;
+	}
+}
@@ -28,6 +28,12 @@ public class Message implements Comparable<Message> {
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Index of this message's identifier (or -1 if not looked up yet) */
+	private int idIndex;
+	/** Indexes of all message identifiers, in the order they were seen */
+	private static Map<String, Integer> idIndexes;
+	/** Message identifiers by their indexes */
+	private static List<String> indexedIds;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -69,6 +75,7 @@ public class Message implements Comparable<Message> {
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
+		this.idIndex = -1;
 		
 		this.timeCreated = SimClock.getTime();
 		this.timeReceived = this.timeCreated;
@@ -119,6 +126,46 @@ public class Message implements Comparable<Message> {
 		return this.uniqueId;
 	}
 	
+	/**
+	 * Returns a small integer index of this message's ID. Unlike the
+	 * {@link #getUniqueId() unique id}, the index is the same for all
+	 * replicates of the message (and all messages with the same ID). Indexes
+	 * are given in the order the IDs are first looked up, starting from zero.
+	 * @return The index of the message's ID
+	 */
+	public int getIdIndex() {
+		if (this.idIndex < 0) {
+			Integer index = idIndexes.get(this.id);
+			if (index == null) {
+				index = idIndexes.size();
+				idIndexes.put(this.id, index);
+				indexedIds.add(this.id);
+			}
+			this.idIndex = index;
+		}
+		return this.idIndex;
+	}
+	
+	/**
+	 * Returns the index of a message ID without giving a new index to IDs
+	 * that haven't been seen yet (see {@link #getIdIndex()})
+	 * @param id The message ID
+	 * @return The index of the ID or -1 if the ID has no index
+	 */
+	public static int lookupIdIndex(String id) {
+		Integer index = idIndexes.get(id);
+		return index == null ? -1 : index;
+	}
+	
+	/**
+	 * Returns the message ID that has the given index
+	 * @param index The index (see {@link #getIdIndex()})
+	 * @return The message ID
+	 */
+	public static String getIdOfIndex(int index) {
+		return indexedIds.get(index);
+	}
+	
 	/**
 	 * Returns the size of the message (in bytes)
 	 * @return the size of the message
@@ -262,6 +309,7 @@ public class Message implements Comparable<Message> {
 	protected void copyFrom(Message m) {
 		this.path = new ArrayList<DTNHost>(m.path);
 		this.timeCreated = m.timeCreated;
+		this.idIndex = m.idIndex;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
 		this.initTtl = m.initTtl;
@@ -348,6 +396,8 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		idIndexes = new HashMap<String, Integer>();
+		indexedIds = new ArrayList<String>();
 	}
 
 	/**
@@ -2,107 +2,302 @@
  * Copyright 2010 Aalto University, ComNet
  * Released under GPLv3. See LICENSE.txt for details. 
  */
-package core;
+package core;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-
-/**
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
  * Intermodule communication bus. Works as a blackboard where modules can
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
- * values are shared for a node instead of message.
- */
+ * values are shared for a node instead of message.
+ * <P>
+ * Every key is registered to an integer slot (see {@link #getSlot(String)})
+ * that is shared by all the buses. Double and integer values are stored
+ * in primitive form in the slots, so frequently updated values (like the
+ * energy level) can be read and updated without boxing by using the slot
+ * based methods and {@link ModuleCommunicationDoubleListener}s. The
+ * string based methods work on the same slots.
+ * </P>
+ */
 public class ModuleCommunicationBus {
-	/** Initial capacity for the listener lists (instead of 10) */
-	private static int INIT_CAPACITY = 3;
-	/** The values in the blackboard (or null if none)*/
-	private HashMap<String, Object> values;
-	/** Subscribed listeners (or null if none)*/
-	private HashMap<String, List<ModuleCommunicationListener>> listeners;
-	
+	/** Initial capacity for the per bus slot arrays */
+	private static final int INIT_CAPACITY = 8;
+
+	/** Slot type of an empty slot */
+	private static final byte TYPE_NONE = 0;
+	/** Slot type of an object value */
+	private static final byte TYPE_OBJECT = 1;
+	/** Slot type of a double value */
+	private static final byte TYPE_DOUBLE = 2;
+	/** Slot type of an integer value */
+	private static final byte TYPE_INT = 3;
+
+	/** Slots of the registered keys */
+	private static final ConcurrentHashMap<String, Integer> slots =
+		new ConcurrentHashMap<String, Integer>();
+	/** Keys of the registered slots (index is the slot) */
+	private static volatile String[] slotKeys = new String[0];
+
+	/** Types of the values in the slots (or null if no values) */
+	private byte[] types;
+	/** Primitive (double and integer) values of the slots */
+	private double[] numbers;
+	/** Object values of the slots (or null if none) */
+	private Object[] objects;
+	/** Subscribed listeners of the slots (or null if none)*/
+	private ModuleCommunicationListener[][] listeners;
+
 	/**
 	 * Constructor.
 	 */
 	public ModuleCommunicationBus() {
-		this.values = null; /* use lazy creation  */
+		this.types = null; /* use lazy creation  */
+		this.numbers = null;
+		this.objects = null;
 		this.listeners = null;
 	}
-	
+
+	/**
+	 * Returns the slot of a key, registering the key if it doesn't have
+	 * a slot yet. Slots are shared by all the buses and stay the same for
+	 * the whole program run, so the slot of a well known key can be stored
+	 * in a static constant.
+	 * @param key The key whose slot to return
+	 * @return The slot of the key
+	 */
+	public static int getSlot(String key) {
+		Integer slot = slots.get(key);
+		if (slot != null) {
+			return slot;
+		}
+		return registerSlot(key);
+	}
+
 	/**
-	 * Adds a new property for this node. The key can be any string but 
+	 * Registers a new slot for a key (unless some other thread did it
+	 * already)
+	 * @param key The key to register
+	 * @return The slot of the key
+	 */
+	private static synchronized int registerSlot(String key) {
+		Integer slot = slots.get(key);
+		if (slot != null) {
+			return slot;
+		}
+
+		String[] keys = Arrays.copyOf(slotKeys, slotKeys.length + 1);
+		keys[keys.length - 1] = key;
+		slotKeys = keys;
+		slots.put(key, keys.length - 1);
+		return keys.length - 1;
+	}
+
+	/**
+	 * Returns the slot of an already registered key
+	 * @param key The key
+	 * @return The slot of the key or -1 if the key has no slot
+	 */
+	private static int findSlot(String key) {
+		Integer slot = slots.get(key);
+		return slot != null ? slot : -1;
+	}
+
+	/**
+	 * Returns the key of a slot
+	 * @param slot The slot
+	 * @return The key that was registered for the slot
+	 */
+	public static String getKey(int slot) {
+		return slotKeys[slot];
+	}
+
+	/**
+	 * Makes sure the value arrays can hold a value for the given slot
+	 * @param slot The slot
+	 */
+	private void ensureValueCapacity(int slot) {
+		if (this.types == null) {
+			/* lazy creation to prevent performance overhead for classes
+			   that don't use the property feature  */
+			int size = Math.max(INIT_CAPACITY, slotKeys.length);
+			this.types = new byte[size];
+			this.numbers = new double[size];
+		}
+		else if (slot >= this.types.length) {
+			int size = Math.max(slot + 1, this.types.length * 2);
+			this.types = Arrays.copyOf(this.types, size);
+			this.numbers = Arrays.copyOf(this.numbers, size);
+			if (this.objects != null) {
+				this.objects = Arrays.copyOf(this.objects, size);
+			}
+		}
+	}
+
+	/**
+	 * Returns the type of the value in a slot
+	 * @param slot The slot
+	 * @return The type of the value (TYPE_NONE if there is no value)
+	 */
+	private byte getType(int slot) {
+		if (this.types == null || slot < 0 || slot >= this.types.length) {
+			return TYPE_NONE;
+		}
+		return this.types[slot];
+	}
+
+	/**
+	 * Adds a new property for this node. The key can be any string but
 	 * it should be such that no other class accidently uses the same value.
 	 * Note that, unless the value is immutable, it can be changed by any
-	 * object that can call {@link #getProperty}. 
+	 * object that can call {@link #getProperty}.
 	 * @param key The key which is used to lookup the value
 	 * @param value The value to store
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
+		if (getType(findSlot(key)) != TYPE_NONE) {
 			/* check to prevent accidental name space collisions */
-			throw new SimError("A value for the key " + key + 
+			throw new SimError("A value for the key " + key +
 					" already exists");
 		}
-		
+
 		this.updateProperty(key, value);
 	}
-	
+
 	/**
-	 * Returns an object that was stored using the given key. If such object 
-	 * is not found, null is returned.
+	 * Returns an object that was stored using the given key. If such object
+	 * is not found, null is returned. Double and integer values are
+	 * returned boxed; use {@link #getDouble(int, double)} or
+	 * {@link #getInt(int, int)} to read them without boxing.
 	 * @param key The key used to lookup the object
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.values == null) {
+		return getProperty(findSlot(key));
+	}
+
+	/**
+	 * Returns an object that was stored in the given slot.
+	 * @param slot The slot of the value
+	 * @return The stored object or null if it isn't found
+	 * @see #getProperty(String)
+	 */
+	public Object getProperty(int slot) {
+		switch (getType(slot)) {
+		case TYPE_DOUBLE:
+			return this.numbers[slot];
+		case TYPE_INT:
+			return (int)this.numbers[slot];
+		case TYPE_OBJECT:
+			return this.objects[slot];
+		default:
 			return null;
 		}
-		return this.values.get(key);
 	}
-	
+
 	/**
-	 * Updates a value for an existing property. For storing the value first 
+	 * Updates a value for an existing property. For storing the value first
 	 * time, {@link #addProperty(String, Object)} should be used which
 	 * checks for name space clashes.
 	 * @param key The key which is used to lookup the value
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.values == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.values = new HashMap<String, Object>();
-		}		
+		updateProperty(getSlot(key), value);
+	}
 
-		this.values.put(key, value);
-		notifyListeners(key, value);
+	/**
+	 * Updates a value in the given slot. Double and Integer values are
+	 * unboxed and stored in primitive form.
+	 * @param slot The slot of the value
+	 * @param value The new value to store
+	 * @see #updateProperty(String, Object)
+	 */
+	public void updateProperty(int slot, Object value) throws SimError {
+		if (value instanceof Double) {
+			setDouble(slot, (Double)value);
+		}
+		else if (value instanceof Integer) {
+			setInt(slot, (Integer)value);
+		}
+		else {
+			ensureValueCapacity(slot);
+			if (this.objects == null) {
+				this.objects = new Object[this.types.length];
+			}
+			this.types[slot] = TYPE_OBJECT;
+			this.objects[slot] = value;
+			notifyListeners(slot, value);
+		}
+	}
+
+	/**
+	 * Sets a double value to the given slot
+	 * @param slot The slot of the value
+	 * @param value The new value
+	 */
+	public void setDouble(int slot, double value) {
+		ensureValueCapacity(slot);
+		if (this.objects != null) {
+			this.objects[slot] = null;
+		}
+		this.types[slot] = TYPE_DOUBLE;
+		this.numbers[slot] = value;
+		notifyDoubleListeners(slot, value);
 	}
 
 	/**
-	 * Changes the Double value with given key with the value delta  
+	 * Sets an integer value to the given slot
+	 * @param slot The slot of the value
+	 * @param value The new value
+	 */
+	public void setInt(int slot, int value) {
+		ensureValueCapacity(slot);
+		if (this.objects != null) {
+			this.objects[slot] = null;
+		}
+		this.types[slot] = TYPE_INT;
+		this.numbers[slot] = value;
+		if (hasListeners(slot)) {
+			notifyListeners(slot, value);
+		}
+	}
+
+	/**
+	 * Changes the Double value with given key with the value delta
 	 * @param key The key of variable to update
 	 * @param delta Value added to the old value
 	 * @return The new value
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double updateDouble(String key, double delta) throws SimError {
-		double current;
-		try {
-			current = (Double)getProperty(key);
-			updateProperty(key, current + delta);
-		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
+		return updateDouble(getSlot(key), delta);
+	}
+
+	/**
+	 * Changes the double value in the given slot with the value delta
+	 * @param slot The slot of the variable to update
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if the value in the slot was not a double
+	 */
+	public double updateDouble(int slot, double delta) throws SimError {
+		byte type = getType(slot);
+		if (type == TYPE_NONE) {
+			throw new SimError("No value for key " + getKey(slot));
 		}
-		catch (NullPointerException npe) {
-			throw new SimError("No value for key " + key);
+		else if (type != TYPE_DOUBLE) {
+			throw new SimError("No Double value for key " + getKey(slot));
 		}
 
-		return current + delta;
+		double value = this.numbers[slot] + delta;
+		this.numbers[slot] = value;
+		notifyDoubleListeners(slot, value);
+		return value;
 	}
-	
+
 	/**
 	 * Returns a double value from the communication bus.
 	 * @param key The key of the variable
@@ -111,18 +306,28 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double getDouble(String key, double naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
-			return naValue;
-		}
-		try {
-			return (Double)value;
+		return getDouble(findSlot(key), naValue);
+	}
+
+	/**
+	 * Returns a double value from the given slot.
+	 * @param slot The slot of the variable
+	 * @param naValue The value to return if there is no value in the slot
+	 * @return The value in the slot, or the naValue if there was no value
+	 * @throws SimError if the value in the slot was not a double
+	 */
+	public double getDouble(int slot, double naValue) throws SimError {
+		byte type = getType(slot);
+		if (type == TYPE_DOUBLE) {
+			return this.numbers[slot];
 		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
+		else if (type == TYPE_NONE ||
+				(type == TYPE_OBJECT && this.objects[slot] == null)) {
+			return naValue;
 		}
+		throw new SimError("No Double value for key " + getKey(slot));
 	}
-	
+
 	/**
 	 * Returns an integer value from the communication bus.
 	 * @param key The key of the variable
@@ -131,87 +336,149 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not an Integer
 	 */
 	public int getInt(String key, int naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
-			return naValue;
-		}
-		try {
-			return (Integer)value;
+		return getInt(findSlot(key), naValue);
+	}
+
+	/**
+	 * Returns an integer value from the given slot.
+	 * @param slot The slot of the variable
+	 * @param naValue The value to return if there is no value in the slot
+	 * @return The value in the slot, or the naValue if there was no value
+	 * @throws SimError if the value in the slot was not an integer
+	 */
+	public int getInt(int slot, int naValue) throws SimError {
+		byte type = getType(slot);
+		if (type == TYPE_INT) {
+			return (int)this.numbers[slot];
 		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Integer value for key " + key);
+		else if (type == TYPE_NONE ||
+				(type == TYPE_OBJECT && this.objects[slot] == null)) {
+			return naValue;
 		}
+		throw new SimError("No Integer value for key " + getKey(slot));
 	}
-	
+
 	/**
 	 * Subscribes a module to changes of a certain value.
 	 * @param key The key of the value whose changes the module is interested of
 	 * @param module The module to subscribe.
 	 */
 	public void subscribe(String key, ModuleCommunicationListener module) {
+		int slot = getSlot(key);
 		if (this.listeners == null) {
 			/* first listener for the whole node */
-			this.listeners = 
-				new HashMap<String, List<ModuleCommunicationListener>>();
+			this.listeners = new ModuleCommunicationListener
+				[Math.max(INIT_CAPACITY, slot + 1)][];
 		}
-		
-		List<ModuleCommunicationListener> list = this.listeners.get(key);
+		else if (slot >= this.listeners.length) {
+			this.listeners = Arrays.copyOf(this.listeners,
+					Math.max(slot + 1, this.listeners.length * 2));
+		}
+
+		ModuleCommunicationListener[] list = this.listeners[slot];
 		if (list == null) {
 			/* first listener for this key */
-			list = new ArrayList<ModuleCommunicationListener>(INIT_CAPACITY);
-			this.listeners.put(key, list);
+			list = new ModuleCommunicationListener[] {module};
 		}
-		
-		list.add(module);
+		else {
+			list = Arrays.copyOf(list, list.length + 1);
+			list[list.length - 1] = module;
+		}
+		this.listeners[slot] = list;
 	}
-	
+
 	/**
 	 * Removes a notification subscription
 	 * @param key The key for which the subscription should be removed
 	 * @param module The module to whose subscription is removed
 	 */
 	public void unsubscribe(String key, ModuleCommunicationListener module) {
-		List<ModuleCommunicationListener> list;
-		
-		if (this.listeners == null) {
-			return; /* no subscriptions */
-		}
-		
-		list = this.listeners.get(key);
-		if (list == null) {
+		int slot = findSlot(key);
+		if (!hasListeners(slot)) {
 			return; /* no subscriptions for the key */
 		}
-		
-		list.remove(module);
+
+		ModuleCommunicationListener[] list = this.listeners[slot];
+		for (int i = 0; i < list.length; i++) {
+			if (list[i].equals(module)) {
+				ModuleCommunicationListener[] newList =
+					new ModuleCommunicationListener[list.length - 1];
+				System.arraycopy(list, 0, newList, 0, i);
+				System.arraycopy(list, i + 1, newList, i, newList.length - i);
+				this.listeners[slot] = newList.length > 0 ? newList : null;
+				return;
+			}
+		}
 	}
-	
-	
+
 	/**
-	 * Notifies all listeners that have subscribed to the given key 
-	 * @param key The key which got new value
-	 * @param newValue The new value for the key
+	 * Returns true if the given slot has any listeners
+	 * @param slot The slot
+	 * @return True if the slot has at least one listener
 	 */
-	private void notifyListeners(String key, Object newValue) {
-		List<ModuleCommunicationListener> list;
-		
-		if (this.listeners == null) {
+	private boolean hasListeners(int slot) {
+		return this.listeners != null && slot >= 0 &&
+			slot < this.listeners.length && this.listeners[slot] != null;
+	}
+
+	/**
+	 * Notifies all listeners that have subscribed to the given slot
+	 * @param slot The slot which got new value
+	 * @param newValue The new value for the slot
+	 */
+	private void notifyListeners(int slot, Object newValue) {
+		if (!hasListeners(slot)) {
 			return;
 		}
-		list = this.listeners.get(key);
-		
-		if (list == null) {
+
+		String key = getKey(slot);
+		for (ModuleCommunicationListener mcl : this.listeners[slot]) {
+			mcl.moduleValueChanged(key, newValue);
+		}
+	}
+
+	/**
+	 * Notifies all listeners that have subscribed to the given slot about
+	 * a new double value
+	 * @param slot The slot which got new value
+	 * @param newValue The new value for the slot
+	 */
+	private void notifyDoubleListeners(int slot, double newValue) {
+		if (!hasListeners(slot)) {
 			return;
 		}
-		
-		for (ModuleCommunicationListener mcl : list) {
-			mcl.moduleValueChanged(key, newValue);
+
+		String key = getKey(slot);
+		Object boxed = null;
+		for (ModuleCommunicationListener mcl : this.listeners[slot]) {
+			if (mcl instanceof ModuleCommunicationDoubleListener) {
+				((ModuleCommunicationDoubleListener)mcl).moduleDoubleChanged(
+						key, newValue);
+			}
+			else {
+				if (boxed == null) {
+					boxed = newValue;
+				}
+				mcl.moduleValueChanged(key, boxed);
+			}
 		}
 	}
-	
-	
+
+
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ? 
-				this.values.toString() : "n/a");
+		if (this.types == null) {
+			return "ComBus with mapping: n/a";
+		}
+
+		StringBuilder sb = new StringBuilder("ComBus with mapping: {");
+		String separator = "";
+		for (int i = 0; i < this.types.length; i++) {
+			if (this.types[i] != TYPE_NONE) {
+				sb.append(separator + getKey(i) + "=" + getProperty(i));
+				separator = ", ";
+			}
+		}
+		return sb.append("}").toString();
 	}
-}
+}
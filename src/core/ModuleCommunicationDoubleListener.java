@@ -0,0 +1,23 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+/**
+ * A {@link ModuleCommunicationListener} that is notified of changes of
+ * double values without boxing them. The other value changes are
+ * reported through {@link #moduleValueChanged(String, Object)}.
+ */
+public interface ModuleCommunicationDoubleListener
+	extends ModuleCommunicationListener {
+	
+	/** 
+	 * This method is called whenever a double variable, whose changes the
+	 * module has registered to, changes. 
+	 * @param key The name of the variable
+	 * @param newValue New value for the variable
+	 */ 
+	public void moduleDoubleChanged(String key, double newValue);
+	
+}
@@ -14,7 +14,8 @@ import java.util.Random;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface
+	implements ModuleCommunicationDoubleListener {
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -28,6 +29,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "radio range" 
 	variable. Value type: double */
 	public static final String RANGE_ID = "Network.radioRange";
+	/** {@link ModuleCommunicationBus} slot of the {@link #RANGE_ID}
+	variable */
+	public static final int RANGE_SLOT =
+		ModuleCommunicationBus.getSlot(RANGE_ID);
 	/** {@link ModuleCommunicationBus} identifier for the "transmission speed" 
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
@@ -36,6 +41,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_DOWN = 2;
 	private static int nextAddress = 0;
 	private static Random rng;
+	/** Number of changes of the range of any interface */
+	private static int rangeChanges;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -48,6 +55,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
+	/** Number of connections created or torn down for this interface */
+	private int connectionChanges;
 
 
 	static {
@@ -61,6 +70,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static void reset() {
 		nextAddress = 0;
 		rng = new Random(0);
+		rangeChanges = 0;
 	}
 	
 	/**
@@ -228,6 +238,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
 
 		this.connections.add(con);
+		this.connectionChanges++;
+		anotherInterface.connectionChanges++;
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
 		// set up bidirectional connection
@@ -246,6 +258,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected void disconnect(Connection con, 
 			NetworkInterface anotherInterface) {
 		con.setUpState(false);
+		this.connectionChanges++;
+		anotherInterface.connectionChanges++;
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
 		// tear down bidirectional connection
@@ -275,6 +289,25 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 				anotherInterface.getHost().getLocation()) <= smallerRange;
 	}
 	
+	/**
+	 * Returns the number of times the range of any interface has changed.
+	 * The pairs of interfaces that are within range of each other can only
+	 * change when this changes or when the interfaces move.
+	 * @return The number of range changes
+	 */
+	protected static int getRangeChanges() {
+		return rangeChanges;
+	}
+
+	/**
+	 * Returns the number of times a connection of this interface has been
+	 * created or torn down.
+	 * @return The number of connection changes
+	 */
+	protected int getConnectionChanges() {
+		return this.connectionChanges;
+	}
+
 	/**
 	 * Returns true if the given NetworkInterface is connected to this host. 
 	 * @param netinterface The other NetworkInterface to check 
@@ -309,6 +342,28 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Updates the location of this interface in the connectivity optimizer
+	 */
+	public void updateLocation() {
+		if (this.optimizer != null) {
+			this.optimizer.updateLocation(this);
+		}
+	}
+
+	/**
+	 * Does the part of the next {@link #update()} that only reads the state
+	 * of the simulation (e.g., finds the interfaces that are in range) and
+	 * stores the result for the update. This method may be called
+	 * concurrently for all interfaces, after the locations of all the
+	 * interfaces have been updated with {@link #updateLocation()}, so it must
+	 * not modify anything but the state of this interface. Default
+	 * implementation does nothing.
+	 */
+	public void prepareUpdate() {
+		/* nothing to prepare by default */
+	}
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
@@ -346,13 +401,42 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			this.transmitSpeed = (Integer)newValue;	
 		}
 		else if (key.equals(RANGE_ID)) {
-			this.transmitRange = (Double)newValue;	
+			setTransmitRange((Double)newValue);
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
 		}
 	}
 
+	/**
+	 * This method is called by the {@link ModuleCommunicationBus} when/if
+	 * someone changes the scanning interval or range
+	 * @param key Identifier of the changed value
+	 * @param newValue New value for the variable
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		if (key.equals(SCAN_INTERVAL_ID)) {
+			this.scanInterval = newValue;
+		}
+		else if (key.equals(RANGE_ID)) {
+			setTransmitRange(newValue);
+		}
+		else {
+			moduleValueChanged(key, newValue);
+		}
+	}
+
+	/**
+	 * Sets a new transmit range and counts the range changes
+	 * @param newRange The new range
+	 */
+	private void setTransmitRange(double newRange) {
+		if (newRange != this.transmitRange) {
+			rangeChanges++;
+		}
+		this.transmitRange = newRange;
+	}
+
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active 
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Update listener that samples the simulation at known times (e.g., a
+ * report that writes a snapshot every n seconds). When the simulation clock
+ * jumps over update rounds (see {@link World#EVENT_DRIVEN_S}), it doesn't
+ * jump over the next sample time of these listeners, so they are called at
+ * the same times as with plain update intervals.
+ */
+public interface SamplingUpdateListener extends UpdateListener {
+
+	/**
+	 * Returns the next simulation time when the listener wants to be called
+	 * @return The next sample time (or a time that is not in the future if
+	 * the listener has no sample time ahead)
+	 */
+	public double getNextSampleTime();
+
+}
@@ -12,7 +12,9 @@ import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
@@ -50,6 +52,9 @@ public class Settings {
 	/** delimiter for requested values in strings ({@value})
 	 * @see #valueFillString(String) */
 	public static final String FILL_DELIMITER = "%%";
+	/** delimiter of the values in run arrays ({@value})
+	 * @see #setRunIndex(int) */
+	private static final String RUN_ARRAY_DELIM = ";";
 	
 	/** Stream where all read settings are written to */
 	private static PrintStream out = null;
@@ -57,6 +62,10 @@ public class Settings {
 	
 	/** run index for run-specific settings */
 	private static int runIndex = 0;
+	/** setting values that override the values of the settings files for
+	 * the current run (see {@link #setOverride(String, String)}) */
+	private static Map<String, String> overrides =
+		new HashMap<String, String>();
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -97,9 +106,27 @@ public class Settings {
 	 * -1 to disable run indexing
 	 */
 	public static void setRunIndex(int index) {
-		runIndex = index;
+		runIndex = index;
 		writtenSettings.clear();
-	}
+		overrides.clear();
+	}
+	
+	/**
+	 * Overrides the value of a setting for the current run. The override
+	 * takes precedence over the settings files (also when the value is
+	 * requested through {@link #valueFillString(String)}) until it is
+	 * removed or the run index is set (see {@link #setRunIndex(int)}).
+	 * @param name Full (namespace prefixed) name of the setting
+	 * @param value The value to use or null to remove the override
+	 */
+	public static void setOverride(String name, String value) {
+		if (value == null) {
+			overrides.remove(name);
+		}
+		else {
+			overrides.put(name, value);
+		}
+	}
 	
 	/**
 	 * Checks that the given integer array contains a valid range. I.e., 
@@ -317,22 +344,14 @@ public class Settings {
 			init(null);
 		}
 		fullPropName = getFullPropertyName(name, false);
-		String value = props.getProperty(fullPropName);
-		
-		if (value != null) { // found value, check if run setting can be parsed
-			value = parseRunSetting(value.trim());
-		}
+		String value = getRunValue(fullPropName);
 			
 		if ((value == null || value.length() == 0) && 
 				this.secondaryNamespace != null) {
-			// try secondary namespace if the value wasn't found from primary
+			// try secondary namespace if the value wasn't found from primary
 			fullPropName = getFullPropertyName(name, true);
-			value = props.getProperty(fullPropName);
-			
-			if (value != null) {
-				value = parseRunSetting(value.trim());
-			}
-		}
+			value = getRunValue(fullPropName);
+		}
 		
 		if (value == null || value.length() == 0) {
 			throw new SettingsError("Can't find setting " + 
@@ -344,20 +363,86 @@ public class Settings {
 	}
 	
 	/**
-	 * Parses run-specific settings from a String value
-	 * @param value The String to parse
-	 * @return The runIndex % arrayLength'th value of the run array
+	 * Returns the value of a property for the current run, i.e., the
+	 * override of the property (if any) or the property's (run-specific)
+	 * value in the settings files
+	 * @param fullPropName Full name of the property
+	 * @return The value or null if the property wasn't found
 	 */
-	private static String parseRunSetting(String value) {
+	private static String getRunValue(String fullPropName) {
+		String value = overrides.get(fullPropName);
+		if (value != null) {
+			return value;
+		}
+		
+		value = props.getProperty(fullPropName);
+		if (value != null) { // found value, check if run setting can be parsed
+			value = parseRunSetting(value.trim());
+		}
+		return value;
+	}
+	
+	/**
+	 * Returns all the values of a setting's run array (see
+	 * {@link #setRunIndex(int)}) regardless of the current run index.
+	 * Overrides are not taken into account.
+	 * @param name Name of the setting
+	 * @return The values of the run array, or just the value of the setting
+	 * if it isn't a run array
+	 * @throws SettingsError if the setting is not found
+	 */
+	public String[] getRunValues(String name) {
+		if (props == null) {
+			init(null);
+		}
+		String fullPropName = getFullPropertyName(name, false);
+		String value = props.getProperty(fullPropName);
+		if ((value == null || value.trim().length() == 0) && 
+				this.secondaryNamespace != null) {
+			fullPropName = getFullPropertyName(name, true);
+			value = props.getProperty(fullPropName);
+		}
+		
+		if (value == null || value.trim().length() == 0) {
+			throw new SettingsError("Can't find setting " + 
+					getPropertyNamesString(name));
+		}
+		
+		value = value.trim();
+		if (!isRunArray(value)) {
+			return new String[] {value};
+		}
+		String[] valueArr = value.substring(1, value.length() - 1).split(
+				RUN_ARRAY_DELIM);
+		for (int i = 0; i < valueArr.length; i++) {
+			valueArr[i] = valueArr[i].trim();
+		}
+		return valueArr;
+	}
+	
+	/**
+	 * Returns true if the value is a run array (see
+	 * {@link #setRunIndex(int)})
+	 * @param value The value to check
+	 * @return True if the value is in the run array format
+	 */
+	private static boolean isRunArray(String value) {
 		final String RUN_ARRAY_START = "[";
 		final String RUN_ARRAY_END = "]";
-		final String RUN_ARRAY_DELIM = ";";
 		final int MIN_LENGTH = 3; // minimum run is one value. e.g. "[v]"
 		
-		if (!value.startsWith(RUN_ARRAY_START) || 
-			!value.endsWith(RUN_ARRAY_END) || 
-			runIndex < 0 ||
-			value.length() < MIN_LENGTH) {
+		return value.startsWith(RUN_ARRAY_START) && 
+			value.endsWith(RUN_ARRAY_END) && 
+			value.length() >= MIN_LENGTH;
+	}
+	
+	/**
+	 * Parses run-specific settings from a String value
+	 * @param value The String to parse
+	 * @return The runIndex % arrayLength'th value of the run array
+	 */
+	private static String parseRunSetting(String value) {
+		if (!isRunArray(value) || runIndex < 0) {
 			return value; // standard format setting -> return
 		}
 		
@@ -406,7 +491,7 @@ public class Settings {
 	 * @throws SettingsError if the value wasn't a numeric value 
 	 * (or the suffix wasn't recognized)
 	 */
-	private double parseDouble(String value, String setting) {
+	double parseDouble(String value, String setting) {
 		double number;
 		int multiplier = 1;
 		
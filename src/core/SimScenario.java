@@ -41,6 +41,15 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value})*/
 	public static final String SIM_CON_S = "simulateConnections";
+	/** multi-horizon run -setting id ({@value}). Boolean. If true and
+	 * {@link #END_TIME_S} is a run array, one run simulates up to the
+	 * largest end time of the array and the reports write a complete
+	 * snapshot also at every smaller end time, to the files a run that ended
+	 * there would write (i.e., <CODE>%%Scenario.endTime%%</CODE> is filled
+	 * with the end time of the snapshot). Reports whose file names don't
+	 * depend on the end time only write the final report. Default = false.
+	 */
+	public static final String MULTI_HORIZON_S = "multiHorizon";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -102,6 +111,13 @@ public class SimScenario implements Serializable {
 	private double maxHostRange;
 	/** Simulation end time */
 	private double endTime;
+	/** End times (as in the settings) before the simulation end time where
+	 * the reports write snapshots, in increasing order */
+	private String[] horizons;
+	/** The end times of {@link #horizons} as simulation times */
+	private double[] horizonTimes;
+	/** End time of the simulation as in the settings */
+	private String endTimeValue;
 	/** Update interval of sim time */
 	private double updateInterval;
 	/** External events queue */
@@ -138,8 +154,14 @@ public class SimScenario implements Serializable {
 		Settings s = new Settings(SCENARIO_NS);
 		nrofGroups = s.getInt(NROF_GROUPS_S);
 
+		this.horizons = new String[0];
+		this.horizonTimes = new double[0];
+		if (s.contains(MULTI_HORIZON_S) && s.getBoolean(MULTI_HORIZON_S)) {
+			initHorizons(s);
+		}
 		this.name = s.valueFillString(s.getSetting(NAME_S));
 		this.endTime = s.getDouble(END_TIME_S);
+		this.endTimeValue = s.getSetting(END_TIME_S);
 		this.updateInterval = s.getDouble(UP_INT_S);
 		this.simulateConnections = s.getBoolean(SIM_CON_S);
 
@@ -168,6 +190,16 @@ public class SimScenario implements Serializable {
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
 				updateListeners, simulateConnections, 
 				eqHandler.getEventQueues());
+
+		if (this.horizons.length > 0) {
+			this.world.setHorizons(this.horizonTimes);
+		}
+
+		World.ActivityMonitor monitor = this.world.getActivityMonitor();
+		if (monitor != null) {
+			addMessageListener(monitor);
+			addConnectionListener(monitor);
+		}
 	}
 	
 	/**
@@ -180,6 +212,36 @@ public class SimScenario implements Serializable {
 		return myinstance;
 	}
 
+	/**
+	 * Reads the end time horizons of a multi-horizon run from the end time
+	 * run array and overrides the end time setting with the largest of them
+	 * @param s Settings of the scenario name space
+	 */
+	private void initHorizons(Settings s) {
+		List<String> values = new ArrayList<String>();
+		List<Double> times = new ArrayList<Double>();
+		for (String v : s.getRunValues(END_TIME_S)) {
+			double time = s.parseDouble(v, END_TIME_S);
+			int i = 0;
+			while (i < times.size() && times.get(i) < time) {
+				i++;
+			}
+			if (i == times.size() || times.get(i) != time) {
+				values.add(i, v);
+				times.add(i, time);
+			}
+		}
+		
+		int last = values.size() - 1;
+		this.horizons = new String[last];
+		this.horizonTimes = new double[last];
+		for (int i = 0; i < last; i++) {
+			this.horizons[i] = values.get(i);
+			this.horizonTimes[i] = times.get(i);
+		}
+		Settings.setOverride(SCENARIO_NS + "." + END_TIME_S, values.get(last));
+	}
+	
 	/**
 	 * Makes sure that a value is positive
 	 * @param value Value to check
@@ -233,6 +295,34 @@ public class SimScenario implements Serializable {
 		return endTime;
 	}
 
+	/**
+	 * Returns the end times before the simulation end time where the
+	 * reports write snapshots in a multi-horizon run (see
+	 * {@link #MULTI_HORIZON_S}), as they are written in the settings
+	 * @return The end times in increasing order (empty if this isn't a
+	 * multi-horizon run)
+	 */
+	public String[] getHorizons() {
+		return this.horizons;
+	}
+	
+	/**
+	 * Returns the end times of {@link #getHorizons()} as simulation times
+	 * @return The end times in increasing order
+	 */
+	public double[] getHorizonTimes() {
+		return this.horizonTimes;
+	}
+	
+	/**
+	 * Returns simulation's end time as it is written in the settings (i.e.,
+	 * the value of <CODE>%%Scenario.endTime%%</CODE>)
+	 * @return simulation's end time
+	 */
+	public String getEndTimeValue() {
+		return this.endTimeValue;
+	}
+	
 	/**
 	 * Returns update interval (simulated seconds) of the simulation
 	 * @return update interval (simulated seconds) of the simulation
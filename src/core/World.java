@@ -8,11 +8,20 @@ import input.EventQueue;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
+import routing.EnergyEngine;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -37,11 +46,79 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the read-only part of the node updates (finding the nodes in
+	 * range) be run in parallel -setting id ({@value}). Boolean (true/false)
+	 * variable. The connection and transfer changes are still made serially
+	 * in the (possibly randomized) update order, so the results do not
+	 * depend on the number of threads.
+	 * Default is {@link #DEF_PARALLEL_UPDATES}.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/**
+	 * Number of threads for the parallel updates -setting id ({@value}).
+	 * Default is the number of available processors.
+	 */
+	public static final String NROF_UPDATE_THREADS_S = "nrofUpdateThreads";
+	/**
+	 * Should the simulation clock jump over the update intervals when
+	 * nothing happens -setting id ({@value}). Boolean (true/false) variable.
+	 * When set, an update round that doesn't start or finish any transfers,
+	 * create or delete any messages, or change any connections is followed
+	 * by a jump to the next time something is known to happen: the next
+	 * external event (e.g., message creation), or the next time any router
+	 * needs an update (see {@link routing.MessageRouter#getNextUpdateTime()}).
+	 * The jumps also stop at the next sample times of
+	 * {@link SamplingUpdateListener}s (e.g., the snapshots of the energy level
+	 * and contact time reports). Other update listeners are called only at
+	 * the update rounds, so their samples are coarser in this mode.
+	 * Hosts don't move or connect between the jumps, so this is meant for
+	 * static-topology scenarios. Default is {@link #DEF_EVENT_DRIVEN}.
+	 */
+	public static final String EVENT_DRIVEN_S = "eventDriven";
+	/**
+	 * Should the interfaces look for new connections only in the forward
+	 * half of their neighborhood -setting id ({@value}). Boolean (true/false)
+	 * variable. Then each pair of interfaces in the connectivity grid is
+	 * checked only once per update instead of once from both sides, but
+	 * which of the two interfaces creates the connection no longer depends
+	 * on the update order. Only for interfaces without a scan interval.
+	 * Default is false.
+	 * @see ConnectivityGrid
+	 */
+	public static final String HALF_NEIGHBORHOOD_S = "halfNeighborhood";
+	/**
+	 * Do the hosts stay in place for the whole simulation -setting id
+	 * ({@value}). Boolean (true/false) variable. If true, the interfaces
+	 * find the other interfaces within their range only in the beginning
+	 * and when the range of some interface changes (e.g., a node fails or
+	 * runs out of energy), and check their connections only when they have
+	 * changed. Hosts must not move when this is set. Default is false.
+	 */
+	public static final String STATIC_TOPOLOGY_S = "staticTopology";
+	/**
+	 * Should the energy of the energy aware routers' hosts be drained in one
+	 * batched pass per update interval -setting id ({@value}). Boolean
+	 * (true/false) variable. If true, the routers only record whether their
+	 * host is transmitting or receiving, and the energy used since the
+	 * previous interval is drained from all hosts before the hosts are
+	 * updated; a host's radio is turned off right when its energy runs out.
+	 * Otherwise each router drains its host's energy at the host's update.
+	 * Default is false.
+	 * @see routing.EnergyEngine
+	 */
+	public static final String BATCHED_ENERGY_S = "batchedEnergy";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should the node updates be prepared in parallel -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_PARALLEL_UPDATES = false;
+	/** should the clock jump over quiet update intervals -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_EVENT_DRIVEN = false;
 
 	private int sizeX;
 	private int sizeY;
@@ -64,6 +141,24 @@ public class World {
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
+	/** executor for preparing the node updates in parallel (or null if
+	 * the updates are not run in parallel) */
+	private ExecutorService updateExecutor;
+	/** update preparation tasks, one for each slice of the hosts */
+	private List<Callable<Object>> prepareTasks;
+	/** records activity for the event driven updates (or null if the
+	 * clock is advanced by the update interval only) */
+	private ActivityMonitor activityMonitor;
+	/** end time of the simulation */
+	private double endTime;
+	/** end times of the report snapshots of a multi-horizon run */
+	private double[] horizons;
+	/** energy engine that drains the hosts in one pass per update interval
+	 * (or null if the routers drain their own hosts) */
+	private EnergyEngine batchedEnergy;
+	/** wall clock time of the last update, without the update listeners
+	 * (nanoseconds) */
+	private long updateDuration;
 
 	/**
 	 * Constructor.
@@ -117,6 +212,71 @@ public class World {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
 					") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
+
+		boolean parallelUpdates = DEF_PARALLEL_UPDATES;
+		if (s.contains(PARALLEL_UPDATES_S)) {
+			parallelUpdates = s.getBoolean(PARALLEL_UPDATES_S);
+		}
+		if (parallelUpdates) {
+			int nrofThreads = Runtime.getRuntime().availableProcessors();
+			if (s.contains(NROF_UPDATE_THREADS_S)) {
+				nrofThreads = s.getInt(NROF_UPDATE_THREADS_S);
+				if (nrofThreads < 1) {
+					throw new SettingsError("Invalid value (" + nrofThreads +
+							") for " + SETTINGS_NS + "." +
+							NROF_UPDATE_THREADS_S);
+				}
+			}
+			initUpdateExecutor(nrofThreads);
+		}
+
+		if (s.contains(EVENT_DRIVEN_S) && s.getBoolean(EVENT_DRIVEN_S)) {
+			this.activityMonitor = new ActivityMonitor();
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S);
+		}
+
+		if (s.contains(BATCHED_ENERGY_S) && s.getBoolean(BATCHED_ENERGY_S)) {
+			this.batchedEnergy = EnergyEngine.getEngine();
+			this.batchedEnergy.setBatched(true);
+		}
+	}
+
+	/**
+	 * Creates the executor and the tasks for preparing the node updates in
+	 * parallel. The hosts are split into one slice per thread.
+	 * @param nrofThreads Number of threads to use
+	 */
+	private void initUpdateExecutor(int nrofThreads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(nrofThreads,
+				nrofThreads, 1, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "HostUpdater");
+				t.setDaemon(true); // don't prevent the VM from exiting
+				return t;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		this.updateExecutor = executor;
+
+		this.prepareTasks = new ArrayList<Callable<Object>>();
+		int nrofHosts = this.hosts.size();
+		for (int i = 0; i < nrofThreads; i++) {
+			final int first = (int)((long)nrofHosts * i / nrofThreads);
+			final int last = (int)((long)nrofHosts * (i + 1) / nrofThreads);
+			if (first == last) {
+				continue;
+			}
+			this.prepareTasks.add(new Callable<Object>() {
+				public Object call() {
+					for (int j = first; j < last; j++) {
+						hosts.get(j).prepareUpdate(simulateConnections);
+					}
+					return null;
+				}
+			});
+		}
 	}
 
 	/**
@@ -167,9 +327,23 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		long startTime = System.nanoTime();
 		double runUntil = SimClock.getTime() + this.updateInterval;
-
-		setNextEventQueue();
+		double timeIncrement = this.updateInterval;
+
+		setNextEventQueue();
+
+		if (this.activityMonitor != null) {
+			if (!this.activityMonitor.isActive()) {
+				/* nothing happened on the last round; jump ahead */
+				double next = getNextUpdateTime();
+				if (next > runUntil) {
+					timeIncrement = next - SimClock.getTime();
+					runUntil = next;
+				}
+			}
+			this.activityMonitor.setActive(false);
+		}
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
@@ -180,10 +354,14 @@ public class World {
 			setNextEventQueue();
 		}
 
-		moveHosts(this.updateInterval);
-		simClock.setTime(runUntil);
-
-		updateHosts();
+		moveHosts(timeIncrement);
+		simClock.setTime(runUntil);
+
+		if (this.batchedEnergy != null) {
+			this.batchedEnergy.drainAll();
+		}
+		updateHosts();
+		this.updateDuration = System.nanoTime() - startTime;
 
 		/* inform all update listeners */
 		for (UpdateListener ul : this.updateListeners) {
@@ -191,12 +369,81 @@ public class World {
 		}
 	}
 
+	/**
+	 * Returns the next time when something is known to happen in the
+	 * simulation: an external event, a router needing an update, a sample
+	 * of an update listener, or the end of the simulation.
+	 * @return The next update time for the event driven updates
+	 */
+	private double getNextUpdateTime() {
+		double next = Math.min(this.nextQueueEventTime, this.endTime);
+		if (this.horizons != null) {
+			double now = SimClock.getTime();
+			for (double h : this.horizons) {
+				if (h > now) {
+					next = Math.min(next, h);
+					break;
+				}
+			}
+		}
+		for (UpdateListener ul : this.updateListeners) {
+			if (ul instanceof SamplingUpdateListener) {
+				double sample = 
+					((SamplingUpdateListener)ul).getNextSampleTime();
+				if (sample > SimClock.getTime()) {
+					next = Math.min(next, sample);
+				}
+			}
+		}
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			DTNHost host = hosts.get(i);
+			if (host.isActive()) {
+				next = Math.min(next, host.getRouter().getNextUpdateTime());
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Returns the wall clock time that the last {@link #update()} took, not
+	 * including the time of the update listeners
+	 * @return The duration of the last update (nanoseconds)
+	 */
+	public long getUpdateDuration() {
+		return this.updateDuration;
+	}
+
+	/**
+	 * Sets the end times where the reports of a multi-horizon run write
+	 * snapshots (see {@link SimScenario#MULTI_HORIZON_S}). The event driven
+	 * updates don't jump over them, so the snapshots are taken at the same
+	 * time a simulation ending there would end.
+	 * @param horizons The end times in increasing order
+	 */
+	public void setHorizons(double[] horizons) {
+		this.horizons = horizons;
+	}
+	
+	/**
+	 * Returns the activity monitor that must receive the message and
+	 * connection events of the hosts if the event driven updates are used
+	 * @return The activity monitor, or null if the event driven updates are
+	 * not used
+	 */
+	ActivityMonitor getActivityMonitor() {
+		return this.activityMonitor;
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		if (this.updateExecutor != null) {
+			prepareHostUpdates();
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -219,6 +466,39 @@ public class World {
 		}
 	}
 
+	/**
+	 * Prepares the updates of all hosts in parallel. First the locations of
+	 * all hosts' interfaces are updated to the connectivity optimizers and
+	 * then the read-only part of the updates is run concurrently (see
+	 * {@link DTNHost#prepareUpdate(boolean)}). The changes themselves are made
+	 * in the update order when the hosts are updated.
+	 */
+	private void prepareHostUpdates() {
+		if (!this.simulateConnections) {
+			return;
+		}
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			hosts.get(i).updateInterfaceLocations();
+		}
+
+		try {
+			for (Future<Object> f : updateExecutor.invokeAll(prepareTasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while preparing host updates", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError((Exception)cause);
+		}
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
@@ -284,7 +564,66 @@ public class World {
 	 * simulation time.
 	 * @param simTime The time of the update
 	 */
-	public void scheduleUpdate(double simTime) {
-		scheduledUpdates.addUpdate(simTime);
+	public void scheduleUpdate(double simTime) {
+		scheduledUpdates.addUpdate(simTime);
+	}
+
+	/**
+	 * Listener that records if any message or connection events happened
+	 * since the last reset. An update round with events may enable actions
+	 * for hosts that were already updated on the round, so the clock can
+	 * jump only after a round without events.
+	 */
+	static class ActivityMonitor implements MessageListener,
+			ConnectionListener {
+		private boolean active = true;
+
+		/**
+		 * Returns true if any events happened since the last reset
+		 * @return true if any events happened since the last reset
+		 */
+		public boolean isActive() {
+			return this.active;
+		}
+
+		/**
+		 * Sets the activity state
+		 * @param active The new state
+		 */
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		public void newMessage(Message m) {
+			this.active = true;
+		}
+
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			this.active = true;
+		}
+
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {
+			this.active = true;
+		}
+
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			this.active = true;
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			this.active = true;
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			this.active = true;
+		}
+
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			this.active = true;
+		}
 	}
 }
@@ -120,6 +120,7 @@ public class DTNSimGUI extends DTNSimUI {
 					processAssertionError(e);
 				}
 				simTime = SimClock.getTime();
+				checkHorizons(simTime);
 			}
 			this.update(false);
 		}
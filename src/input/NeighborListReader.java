@@ -1,369 +1,418 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
-package input;
-
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeMap;
 
-import core.Coord;
 import core.SettingsError;
-import core.Tuple;
-
-
-/**
- * Reader for ExternalMovement movement model's time-location tuples.
- * <P>
- * First line of the file should be the offset header. Syntax of the header
- * should be:<BR>
- * <CODE>minTime maxTime minX maxX minY maxY minZ maxZ</CODE>
- * <BR>
- * Last two values (Z-axis) are ignored at the moment but can be present 
- * in the file.
- * <P>
- * Following lines' syntax should be:<BR>
- * <CODE>time id xPos yPos</CODE><BR>
- * where <CODE>time</CODE> is the time when a node with <CODE>id</CODE> should
- * be at location <CODE>(xPos, yPos)</CODE>.
- * </P>
- * <P>
- * All lines must be sorted by time. Sampling interval (time difference between
- * two time instances) must be same for the whole file.
- * </P>
- */
+
+
+/**
+ * Reader for the time slotted neighbor lists of the DRN routers.
+ * <P>
+ * First line of the file should be the offset header. Syntax of the header
+ * should be:<BR>
+ * <CODE>minTime maxTime</CODE>
+ * <P>
+ * Following lines' syntax should be:<BR>
+ * <CODE>time id neighborId1 neighborId2 ...</CODE><BR>
+ * where <CODE>time</CODE> is the start of the time slot in which the node
+ * with <CODE>id</CODE> is allowed to forward messages to the listed
+ * neighbors.
+ * </P>
+ * <P>
+ * The whole file is parsed once into an immutable index of time slot ->
+ * node id -> neighbor ids, so a lookup does not depend on the size of the
+ * file. Readers are shared between all routers that use the same file (see
+ * {@link #getReader(String)}).
+ * </P>
+ * <P>
+ * Files whose name ends with {@link #BINARY_EXT} are read in the binary
+ * format created by {@link #storeToBinaryFile(String, NeighborListReader)}.
+ * The binary file is memory mapped and used as the index as such, so it
+ * needs no parsing and its pages are shared between parallel runs. Text
+ * files can be converted with:<BR>
+ * <CODE>java input.NeighborListReader list.txt [list.binnl]</CODE>
+ * </P>
+ */
 public class NeighborListReader {
 	/* Prefix for comment lines (lines starting with this are ignored) */
-	public static final String COMMENT_PREFIX = "#";
-	private Scanner scanner;
-	private double lastTimeStamp = -1;
-	private String lastLine;
-	private double minTime;
-	private double maxTime;
-	private boolean normalize;
+	public static final String COMMENT_PREFIX = "#";
+	/** Extension of binary neighbor list files */
+	public static final String BINARY_EXT = ".binnl";
+	/** Identifier in the beginning of binary neighbor list files */
+	private static final int BINARY_MAGIC = 0x4F4E4E4C; /* "ONNL" */
+	/** Size of the header of binary files (bytes) */
+	private static final int BINARY_HEADER_SIZE = 32;
+	/** Neighbor list returned for nodes that have no entry in a slot */
+	private static final int[] NO_NEIGHBORS = new int[0];
+	/** Already parsed readers, keyed by the file path */
+	private static Map<String, NeighborListReader> readers =
+		new HashMap<String, NeighborListReader>();
+
+	private double minTime;
+	private double maxTime;
 	private String survivorId = "n";
-	private ArrayList<String> allLines = new ArrayList<String>();
-		
-	/**
-	 * Constructor. Creates a new reader that reads the data from a file.
-	 * @param inFilePath Path to the file where the data is read
-	 * @throws SettingsError if the file wasn't found
-	 */
-	public NeighborListReader(String inFilePath) {
-		this.normalize = true;
+	/** Start times of the time slots in ascending order */
+	private int[] slotTimes;
+	/** Number of node ids in each slot (the biggest id + 1) */
+	private int nrofNodes;
+	/** Start index of the neighbors of each node of each slot in
+	 * {@link #neighborIds}, in the order [slot * nrofNodes + nodeId], and the
+	 * total number of neighbor ids as the last value */
+	private IntBuffer offsets;
+	/** Neighbor ids of all nodes in all slots */
+	private IntBuffer neighborIds;
+
+	/**
+	 * Constructor. Creates a new reader that reads the data from a file.
+	 * @param inFilePath Path to the file where the data is read
+	 * @throws SettingsError if the file wasn't found or it contained an
+	 * invalid line
+	 */
+	public NeighborListReader(String inFilePath) {
 		File inFile = new File(inFilePath);
+		if (inFilePath.endsWith(BINARY_EXT)) {
+			readBinaryFile(inFile);
+		}
+		else {
+			readTextFile(inFile);
+		}
+	}
+
+	/**
+	 * Parses a text neighbor list file into the index
+	 * @param inFile The file to read
+	 */
+	private void readTextFile(File inFile) {
+		Scanner scanner;
 		try {
-				scanner = new Scanner(inFile);
-			} catch (FileNotFoundException e) {
-				System.out.println("Couldn't find external movement input " +
-						"file " + inFile);
+			scanner = new Scanner(inFile);
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find neighbor list input " +
+					"file " + inFile);
+		}
+
+		String offsets = scanner.nextLine();
+		try {
+			Scanner lineScan = new Scanner(offsets);
+			minTime = lineScan.nextDouble();
+			maxTime = lineScan.nextDouble();
+		} catch (Exception e) {
+			throw new SettingsError("Invalid offset line '" + offsets + "'");
+		}
+
+		/* slot time -> node id -> neighbor ids (in the file order) */
+		TreeMap<Integer, HashMap<Integer, int[]>> slots =
+			new TreeMap<Integer, HashMap<Integer, int[]>>();
+		int maxId = -1;
+
+		while (scanner.hasNextLine()) {
+			String line = scanner.nextLine().trim();
+			if (line.length() == 0 || line.startsWith(COMMENT_PREFIX)) {
+				continue; /* skip empty and comment lines */
 			}
-			
-			String offsets = scanner.nextLine();
-		
+
+			String[] tokens = line.split("\\s+");
+			int time, id;
+			int[] values = new int[tokens.length - 2];
 			try {
-				Scanner lineScan = new Scanner(offsets);
-				minTime = lineScan.nextDouble();
-				maxTime = lineScan.nextDouble();
-				System.out.println("Min and Max time " + minTime + " " + maxTime);
-			} catch (Exception e) {
-				System.out.println("Invalid offset line '" + offsets + "'");
-			}
-			
-//			lastLine = scanner.nextLine();
-//			System.out.println("Last line: " + lastLine);
-//			
-			
-	 //read all lines
-		while(scanner.hasNextLine()){
-			String currentLine = scanner.nextLine();
-			//System.out.println("Here " + currentLine );
-			allLines.add(currentLine);
-		}
-	}
-	
-	/**
-	 * Sets normalizing of read values on/off. If on, values returned by 
-	 * {@link #readNextMovements()} are decremented by minimum values of the
-	 * offsets. Default is on (normalize).
-	 * @param normalize If true, normalizing is on (false -> off).
-	 */
-	public void setNormalize(boolean normalize) {
-		this.normalize = normalize;
-	}
-	
-	public ArrayList<String> getNeighborListEdgeRewiring(String nodeId){
-		ArrayList<String> neighborList = new ArrayList<String>();
-		for(int i =0; i < allLines.size(); i++){
-			Scanner lineScan = new Scanner(allLines.get(i));
-			int time = lineScan.nextInt();
-			String id = lineScan.next();
-			if((survivorId+id).matches(nodeId)){
-				while(lineScan.hasNext()){
-					int value = lineScan.nextInt();
-//					System.out.println(value +" ");
-					neighborList.add(survivorId+value);
+				time = Integer.parseInt(tokens[0]);
+				id = Integer.parseInt(tokens[1]);
+				for (int i = 2; i < tokens.length; i++) {
+					values[i - 2] = Integer.parseInt(tokens[i]);
 				}
+			} catch (RuntimeException e) {
+				throw new SettingsError("Invalid line '" + line + "' in " +
+						"neighbor list file " + inFile);
+			}
+
+			HashMap<Integer, int[]> slot = slots.get(time);
+			if (slot == null) {
+				slot = new HashMap<Integer, int[]>();
+				slots.put(time, slot);
+			}
+
+			int[] previous = slot.get(id);
+			if (previous != null) { /* same node listed twice in a slot */
+				int[] merged = Arrays.copyOf(previous,
+						previous.length + values.length);
+				System.arraycopy(values, 0, merged, previous.length,
+						values.length);
+				values = merged;
 			}
-				
+			slot.put(id, values);
+			maxId = Math.max(maxId, id);
 		}
-		return neighborList;
-	}
-	
-	public ArrayList<String> getNeighborList(String nodeId, int simTime){
-		ArrayList<String> neighborList = new ArrayList<String>();
-		for(int i =0; i < allLines.size(); i++){
-			Scanner lineScan = new Scanner(allLines.get(i));
-			int time = lineScan.nextInt();
-			String id = lineScan.next();
-			if(Math.abs(simTime - time) == 0 && (survivorId+id).matches(nodeId)){
-//				System.out.println("Simtime: " + simTime + " Time: " + time + " ");
-				
-				while(lineScan.hasNext()){
-					int value = lineScan.nextInt();
-					//System.out.print(value +" ");
-					neighborList.add(survivorId+value);
+		scanner.close();
+
+		this.slotTimes = new int[slots.size()];
+		this.nrofNodes = maxId + 1;
+		int[] starts = new int[slots.size() * this.nrofNodes + 1];
+		int nrofIds = 0;
+		int slotIndex = 0;
+		for (Map.Entry<Integer, HashMap<Integer, int[]>> e : slots.entrySet()) {
+			this.slotTimes[slotIndex] = e.getKey();
+			for (int[] values : e.getValue().values()) {
+				nrofIds += values.length;
+			}
+			slotIndex++;
+		}
+
+		int[] ids = new int[nrofIds];
+		int next = 0;
+		slotIndex = 0;
+		for (HashMap<Integer, int[]> slot : slots.values()) {
+			for (int id = 0; id < this.nrofNodes; id++) {
+				starts[slotIndex * this.nrofNodes + id] = next;
+				int[] values = slot.get(id);
+				if (values != null) {
+					System.arraycopy(values, 0, ids, next, values.length);
+					next += values.length;
 				}
 			}
-				
+			slotIndex++;
 		}
-		
-//		if(simTime == 0  && nodeId.matches("n0")){
-//			System.out.println("At time" + simTime + " Neighborlist: " + neighborList);
-//		}
-		return neighborList;
+		starts[starts.length - 1] = next;
+
+		this.offsets = IntBuffer.wrap(starts);
+		this.neighborIds = IntBuffer.wrap(ids);
 	}
-	
-	
-	/**
-	 * Reads all new id-coordinate tuples that belong to the same time instance
-	 * @return A list of tuples or empty list if there were no more moves
-	 * @throws SettingError if an invalid line was read
+
+	/**
+	 * Maps a binary neighbor list file to memory and uses it as the index
+	 * @param inFile The file to read
 	 */
-	public List<Tuple<String, List>> readNextNeighbors() {
-		
-	//System.out.println("Hello");
-	ArrayList<Tuple<String, List>> neighbors = 
-		new ArrayList<Tuple<String, List>>();
-	List<String> eachNeighborList = new ArrayList<String>();
-	
-	if (!scanner.hasNextLine()) {
-		System.out.println("Does not have next line");
-		return neighbors;
-	}
-	
-	Scanner lineScan = new Scanner(lastLine);
-	//System.out.println("Current Line: " + lastLine);
-	double time = lineScan.nextDouble();
-	String id = lineScan.next();
-	System.out.println("Time : " + time + " Id: "  + id);
-	
-	//Store the neighbors in a list
-	while(lineScan.hasNext()){
-		Double value = lineScan.nextDouble();
-		//System.out.print(value +" ");
-		eachNeighborList.add(survivorId+value);
+	private void readBinaryFile(File inFile) {
+		ByteBuffer buffer;
+		try {
+			FileInputStream fis = new FileInputStream(inFile);
+			FileChannel channel = fis.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			fis.close(); /* the mapping stays valid */
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find neighbor list input " +
+					"file " + inFile);
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read neighbor list input " +
+					"file " + inFile + ": " + e.getMessage());
+		}
+
+		if (buffer.capacity() < BINARY_HEADER_SIZE ||
+				buffer.getInt(0) != BINARY_MAGIC) {
+			throw new SettingsError("Invalid binary neighbor list file " +
+					inFile);
+		}
+		this.minTime = buffer.getDouble(4);
+		this.maxTime = buffer.getDouble(12);
+		int nrofSlots = buffer.getInt(20);
+		this.nrofNodes = buffer.getInt(24);
+		int nrofIds = buffer.getInt(28);
+
+		long nrofOffsets = (long)nrofSlots * this.nrofNodes + 1;
+		long size = BINARY_HEADER_SIZE +
+			4L * (nrofSlots + nrofOffsets + nrofIds);
+		if (nrofSlots < 0 || this.nrofNodes < 0 || nrofIds < 0 ||
+				size != buffer.capacity()) {
+			throw new SettingsError("Invalid binary neighbor list file " +
+					inFile);
+		}
+
+		buffer.position(BINARY_HEADER_SIZE);
+		IntBuffer ints = buffer.slice().asIntBuffer();
+		this.slotTimes = new int[nrofSlots];
+		ints.get(this.slotTimes);
+		this.offsets = ints.slice();
+		this.offsets.limit((int)nrofOffsets);
+		ints.position(nrofSlots + (int)nrofOffsets);
+		this.neighborIds = ints.slice();
 	}
-	
-	if (normalize) {
-		time -= minTime;
-//		x -= minX;
-//		y -= minY;
+
+	/**
+	 * Returns a reader for the given file. The file is parsed only once and
+	 * the same (immutable) reader is returned for all subsequent requests
+	 * of the same file.
+	 * @param inFilePath Path to the file where the data is read
+	 * @return A reader for the file
+	 */
+	public static synchronized NeighborListReader getReader(String inFilePath) {
+		NeighborListReader reader = readers.get(inFilePath);
+		if (reader == null) {
+			reader = new NeighborListReader(inFilePath);
+			readers.put(inFilePath, reader);
+		}
+		return reader;
 	}
-	
-	lastTimeStamp = time;
-	
-	while (scanner.hasNextLine() && lastTimeStamp == time) {
-		lastLine = scanner.nextLine();
-		//System.out.println("Line: " + lastLine);
-		
-		if (lastLine.trim().length() == 0 || 
-				lastLine.startsWith(COMMENT_PREFIX)) {
-			continue; /* skip empty and comment lines */
+
+	/**
+	 * Returns the numeric id that is used for the node in the neighbor list
+	 * file, i.e., the part of the node name after the survivor prefix.
+	 * @param nodeId Name of the node
+	 * @return The numeric id or -1 if the node is not a survivor node
+	 */
+	public int getNodeIndex(String nodeId) {
+		if (!nodeId.startsWith(survivorId)) {
+			return -1;
 		}
-		int idVal = Integer.valueOf(id);
-		// add previous line's tuple
-		neighbors.add(new Tuple<String, List>(survivorId + id, eachNeighborList));
-		//System.out.println("Added: " + id + " - " + eachNeighborList + " <=> " + neighbors.get(idVal).getKey() +" => "+neighbors.get(idVal).getValue());
-		
-		//moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));		
-		
-		lineScan = new Scanner(lastLine);
-		
 		try {
-			eachNeighborList = new ArrayList<String>();
-			
-			time = lineScan.nextDouble();
-			id = lineScan.next();
-			
-			while(lineScan.hasNext()){
-				Double value = lineScan.nextDouble();
-				//System.out.print(value +" ");
-				eachNeighborList.add(survivorId+ value);
-			}
-			System.out.println("\n");
-		} catch (Exception e) {
-			System.out.println("Invalid line '" + lastLine + "'");
+			return Integer.parseInt(nodeId.substring(survivorId.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the neighbors of a node in the time slot that starts at the
+	 * given time.
+	 * @param nodeIndex Numeric id of the node (see {@link #getNodeIndex})
+	 * @param simTime Start time of the time slot
+	 * @return The neighbor ids (empty if the node has no neighbors listed
+	 * for the slot)
+	 */
+	public int[] getNeighbors(int nodeIndex, int simTime) {
+		int slot = Arrays.binarySearch(this.slotTimes, simTime);
+		if (slot < 0 || nodeIndex < 0 || nodeIndex >= this.nrofNodes) {
+			return NO_NEIGHBORS;
+		}
+		int index = slot * this.nrofNodes + nodeIndex;
+		int start = this.offsets.get(index);
+		int end = this.offsets.get(index + 1);
+		if (start == end) {
+			return NO_NEIGHBORS;
+		}
+
+		int[] ids = new int[end - start];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = this.neighborIds.get(start + i);
 		}
-		
-		if (normalize) {
-			time -= minTime;
-//			x -= minX;
-//			y -= minY;
+		return ids;
+	}
+
+	public ArrayList<String> getNeighborListEdgeRewiring(String nodeId){
+		ArrayList<String> neighborList = new ArrayList<String>();
+		int nodeIndex = getNodeIndex(nodeId);
+		for (int slot = 0; slot < this.slotTimes.length; slot++) {
+			addNames(neighborList, getNeighbors(nodeIndex, slotTimes[slot]));
 		}
+		return neighborList;
 	}
-	
-	if (!scanner.hasNextLine()) {	// add the last tuple of the file
-		neighbors.add(new Tuple<String, List>(survivorId + id, eachNeighborList));
+
+	public ArrayList<String> getNeighborList(String nodeId, int simTime){
+		ArrayList<String> neighborList = new ArrayList<String>();
+		addNames(neighborList, getNeighbors(getNodeIndex(nodeId), simTime));
+		return neighborList;
 	}
-	//System.out.println("Neighbors List: " + neighbors);
-	return neighbors;
-}
-	
-	
-	
-	public HashMap<String, List> readNextNeighborsMap() {
-		
-	//System.out.println("Hello");
-	HashMap<String, List> neighbors = 
-		new HashMap<String, List>();
-	List<String> eachNeighborList = new ArrayList<String>();
-	
-	if (!scanner.hasNextLine()) {
-		System.out.println("Does not have next line");
-		return neighbors;
+
+	/**
+	 * Adds the node names of the given neighbor ids to a list
+	 * @param list The list to add the names to
+	 * @param ids The neighbor ids
+	 */
+	private void addNames(ArrayList<String> list, int[] ids) {
+		for (int id : ids) {
+			list.add(survivorId + id);
+		}
 	}
-	
-	Scanner lineScan = new Scanner(lastLine);
-	//System.out.println("Current Line: " + lastLine);
-	double time = lineScan.nextDouble();
-	String id = lineScan.next();
-	System.out.println("Time : " + time + " Id: "  + id);
-	
-	//Store the neighbors in a list
-	while(lineScan.hasNext()){
-		Double value = lineScan.nextDouble();
-		//System.out.print(value +" ");
-		eachNeighborList.add(survivorId+value);
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
 	}
-	
-	if (normalize) {
-		time -= minTime;
-//		x -= minX;
-//		y -= minY;
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
 	}
-	
-	lastTimeStamp = time;
-	
-	while (scanner.hasNextLine() && lastTimeStamp == time) {
-		lastLine = scanner.nextLine();
-		//System.out.println("Line: " + lastLine);
-		
-		if (lastLine.trim().length() == 0 || 
-				lastLine.startsWith(COMMENT_PREFIX)) {
-			continue; /* skip empty and comment lines */
+
+	/**
+	 * Stores the neighbor lists of a reader to a binary file. All values
+	 * are stored as big-endian numbers: a header with an identifier,
+	 * minTime and maxTime (doubles), and the number of slots, node ids and
+	 * neighbor ids, followed by the slot start times, the offset table
+	 * ([slot * nrofNodes + nodeId] -> index of the first neighbor id, and
+	 * the total number of ids) and all neighbor ids.
+	 * @param fileName Path to the file where the lists are stored
+	 * @param reader The reader whose lists are stored
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static void storeToBinaryFile(String fileName,
+			NeighborListReader reader) throws IOException {
+
+		// make sure the file name ends with binary extension
+		if (!fileName.endsWith(BINARY_EXT)) {
+			fileName += BINARY_EXT;
 		}
-		
-		// add previous line's tuple
-		neighbors.put(survivorId + id , eachNeighborList);
-	
-		//System.out.println("Added: " + id + " - " + eachNeighborList + " <=> " + neighbors.get(idVal).getKey() +" => "+neighbors.get(idVal).getValue());
-		
-		//moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));		
-		
-		lineScan = new Scanner(lastLine);
-		
-		try {
-			eachNeighborList = new ArrayList<String>();
-			
-			time = lineScan.nextDouble();
-			id = lineScan.next();
-			
-			while(lineScan.hasNext()){
-				Double value = lineScan.nextDouble();
-				//System.out.print(value +" ");
-				eachNeighborList.add(survivorId+ value);
-			}
-			System.out.println("\n");
-		} catch (Exception e) {
-			System.out.println("Invalid line '" + lastLine + "'");
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName)));
+		IntBuffer offsets = reader.offsets.duplicate();
+		IntBuffer ids = reader.neighborIds.duplicate();
+		offsets.rewind();
+		ids.rewind();
+
+		out.writeInt(BINARY_MAGIC);
+		out.writeDouble(reader.minTime);
+		out.writeDouble(reader.maxTime);
+		out.writeInt(reader.slotTimes.length);
+		out.writeInt(reader.nrofNodes);
+		out.writeInt(ids.remaining());
+		for (int time : reader.slotTimes) {
+			out.writeInt(time);
 		}
-		
-		if (normalize) {
-			time -= minTime;
-//			x -= minX;
-//			y -= minY;
+		while (offsets.hasRemaining()) {
+			out.writeInt(offsets.get());
 		}
+		while (ids.hasRemaining()) {
+			out.writeInt(ids.get());
+		}
+
+		out.close();
 	}
-	
-	if (!scanner.hasNextLine()) {	// add the last tuple of the file
-		neighbors.put(survivorId + id, eachNeighborList);
-	}
-	//System.out.println("Neighbors List: " + neighbors);
-	return neighbors;
-}
 
+	/**
+	 * Converts a neighbor list text file to the binary format.
+	 * @param args The text file and, optionally, the binary file to create
+	 * (default is the text file name with the binary extension)
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: java input.NeighborListReader " +
+					"<neighbor list file> [binary file]");
+			System.exit(-1);
+		}
+
+		String outFile = args.length > 1 ? args[1] :
+			args[0].replaceFirst("\\.txt$", "") + BINARY_EXT;
+		try {
+			storeToBinaryFile(outFile, new NeighborListReader(args[0]));
+		} catch (IOException e) {
+			System.err.println("Failed to store " + outFile + ": " + e);
+			System.exit(-1);
+		}
+	}
 
-	
-	/**
-	 * Returns the time stamp where the last moves read with 
-	 * {@link #readNextMovements()} belong to.
-	 * @return The time stamp
-	 */
-	public double getLastTimeStamp() {
-		return lastTimeStamp;
-	}
-
-	/**
-	 * Returns offset maxTime
-	 * @return the maxTime
-	 */
-	public double getMaxTime() {
-		return maxTime;
-	}
-
-	/**
-	 * Returns offset maxX
-	 * @return the maxX
-	 */
-//	public double getMaxX() {
-//		return maxX;
-//	}
-
-	/**
-	 * Returns offset maxY
-	 * @return the maxY
-	 */
-//	public double getMaxY() {
-//		return maxY;
-//	}
-
-	/**
-	 * Returns offset minTime
-	 * @return the minTime
-	 */
-	public double getMinTime() {
-		return minTime;
-	}
-
-	/**
-	 * Returns offset minX
-	 * @return the minX
-	 */
-//	public double getMinX() {
-//		return minX;
-//	}
-
-	/**
-	 * Returns offset minY
-	 * @return the minY
-	 */
-//	public double getMinY() {
-//		return minY;
-//	}
-	
-}
+}
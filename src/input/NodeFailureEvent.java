@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.List;
+
+import core.DTNHost;
+import core.NetworkInterface;
+import core.World;
+
+/**
+ * External event for failing (turning the radio off of) a set of nodes.
+ */
+public class NodeFailureEvent extends ExternalEvent {
+	private static final long serialVersionUID = 42L;
+	/** Name prefix of the failing nodes */
+	private String prefix;
+	/** Ids (name suffixes) of the failing nodes */
+	private int[] ids;
+
+	/**
+	 * Creates a node failure event
+	 * @param prefix Name prefix of the failing nodes
+	 * @param ids Ids (name suffixes) of the failing nodes
+	 * @param time Time, when the nodes fail
+	 */
+	public NodeFailureEvent(String prefix, int[] ids, double time) {
+		super(time);
+		this.prefix = prefix;
+		this.ids = ids;
+	}
+
+	/**
+	 * Turns off the radios of the failing nodes
+	 */
+	@Override
+	public void processEvent(World world) {
+		List<DTNHost> hosts = world.getHosts();
+		for (int id : this.ids) {
+			/* host names are group id + address */
+			if (id < 0 || id >= hosts.size()) {
+				continue;
+			}
+			DTNHost host = hosts.get(id);
+			if (host.toString().equals(this.prefix + id)) {
+				host.getComBus().setDouble(NetworkInterface.RANGE_SLOT, 0.0);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "FAILURE @" + this.time + " " + this.ids.length + " node(s)";
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+
+import core.DTNSim;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Node failure schedule of a disaster scenario. Reads a failed node list
+ * file once per run and turns it into a timeline of failure events; at the
+ * time of each event, the radios of the hosts that failed at that time are
+ * turned off (see {@link NodeFailureEvent}). Between the events the schedule
+ * costs nothing.
+ * <P>
+ * The schedule is configured as an event generator class, e.g.:<BR>
+ * <CODE>Events2.class = NodeFailureSchedule</CODE><BR>
+ * <CODE>Events2.failedNodeListFile = FailedNodeList/F_C200.txt</CODE>
+ * </P>
+ * <P>
+ * Syntax of the lines in the failed node list file is:<BR>
+ * <CODE>time id1 id2 ...</CODE><BR>
+ * where the ids are the survivor nodes (named with prefix <CODE>n</CODE>)
+ * that have failed by the time <CODE>time</CODE>. Lines must be sorted by
+ * time.
+ * </P>
+ */
+public class NodeFailureSchedule implements EventQueue {
+	/** Failed node list file path -setting id ({@value}). */
+	public static final String FAILED_NODE_FILE_S = "failedNodeListFile";
+
+	/** The schedule of the current run (or null if none is configured) */
+	private static NodeFailureSchedule schedule;
+
+	private String survivorId = "n";
+	/** Times of the lines in the file, in ascending order */
+	private double[] times;
+	/** All failed node ids at the times, as listed in the file */
+	private int[][] failedIds;
+	/** Ids of the nodes that failed exactly at the times */
+	private int[][] newlyFailedIds;
+	/** Index of the next failure event */
+	private int nextIndex;
+
+	static {
+		DTNSim.registerForReset(NodeFailureSchedule.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Constructor. Reads the failure schedule from the file defined in the
+	 * settings and makes it the schedule of the current run.
+	 * @param s Settings for this event queue
+	 */
+	public NodeFailureSchedule(Settings s) {
+		File inFile = new File(s.getSetting(FAILED_NODE_FILE_S));
+		Scanner scanner;
+		try {
+			scanner = new Scanner(inFile);
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find failed node list " +
+					"file " + inFile);
+		}
+
+		List<Double> timeList = new ArrayList<Double>();
+		List<int[]> idList = new ArrayList<int[]>();
+		while (scanner.hasNextLine()) {
+			String line = scanner.nextLine().trim();
+			if (line.length() == 0) {
+				continue;
+			}
+
+			String[] tokens = line.split("\\s+");
+			int[] ids = new int[tokens.length - 1];
+			try {
+				timeList.add(Double.parseDouble(tokens[0]));
+				for (int i = 1; i < tokens.length; i++) {
+					ids[i - 1] = Integer.parseInt(tokens[i]);
+				}
+			} catch (NumberFormatException e) {
+				throw new SettingsError("Invalid line '" + line + "' in " +
+						"failed node list file " + inFile);
+			}
+			idList.add(ids);
+		}
+		scanner.close();
+
+		this.times = new double[timeList.size()];
+		this.failedIds = idList.toArray(new int[idList.size()][]);
+		this.newlyFailedIds = new int[timeList.size()][];
+
+		Set<Integer> failed = new HashSet<Integer>();
+		for (int i = 0; i < this.times.length; i++) {
+			this.times[i] = timeList.get(i);
+			if (i > 0 && this.times[i] < this.times[i - 1]) {
+				throw new SettingsError("Failed node list file " + inFile +
+						" is not sorted by time");
+			}
+
+			int[] ids = new int[this.failedIds[i].length];
+			int nrofNew = 0;
+			for (int id : this.failedIds[i]) {
+				if (failed.add(id)) {
+					ids[nrofNew++] = id;
+				}
+			}
+			this.newlyFailedIds[i] = Arrays.copyOf(ids, nrofNew);
+		}
+
+		this.nextIndex = 0;
+		skipEmptyEvents();
+		schedule = this;
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		schedule = null;
+	}
+
+	/**
+	 * Returns the failure schedule of the current run
+	 * @return The schedule or null if no schedule is configured
+	 */
+	public static NodeFailureSchedule getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Returns the names of all the nodes that have failed by the given time
+	 * as listed in the failed node list file.
+	 * @param simTime The time of the line in the file
+	 * @return The failed nodes, or an empty list if the file has no line
+	 * for the time
+	 */
+	public ArrayList<String> getFailedNodeList(double simTime) {
+		ArrayList<String> failedNodeList = new ArrayList<String>();
+		int index = Arrays.binarySearch(this.times, simTime);
+		if (index >= 0) {
+			for (int id : this.failedIds[index]) {
+				failedNodeList.add(survivorId + id);
+			}
+		}
+		return failedNodeList;
+	}
+
+	/**
+	 * Moves the next event index over the times that have no new failures
+	 */
+	private void skipEmptyEvents() {
+		while (this.nextIndex < this.times.length &&
+				this.newlyFailedIds[this.nextIndex].length == 0) {
+			this.nextIndex++;
+		}
+	}
+
+	/**
+	 * Returns the next failure event
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		if (this.nextIndex >= this.times.length) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		ExternalEvent ee = new NodeFailureEvent(survivorId,
+				this.newlyFailedIds[this.nextIndex], this.times[this.nextIndex]);
+		this.nextIndex++;
+		skipEmptyEvents();
+		return ee;
+	}
+
+	/**
+	 * Returns the time of the next failure event
+	 * @see input.EventQueue#nextEventsTime()
+	 */
+	public double nextEventsTime() {
+		if (this.nextIndex >= this.times.length) {
+			return Double.MAX_VALUE;
+		}
+		return this.times[this.nextIndex];
+	}
+}
@@ -1,12 +1,15 @@
 /* 
- * Copyright 2010 Aalto University, ComNet
+ * Copyright 2010 Aalto University, ComNet
  * Released under GPLv3. See LICENSE.txt for details. 
  */
 package interfaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -33,16 +36,35 @@ import core.Settings;
  * connectivity. 
  * </P>
  * <P>
+ * The cells are stored in flat arrays indexed by the cell index, and the
+ * cell of each interface in an array indexed by the interface address, so
+ * updating the locations and finding the near interfaces (into a list given
+ * by the caller) doesn't allocate any objects.
+ * </P>
+ * <P>
  * <strong>Note:</strong> this class does NOT support negative
  * coordinates. Also, it makes sense to normalize the coordinates to start
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface,GridCell> ginterfaces;
+	/** Cell index value for interfaces that are not in the grid */
+	private static final int NO_CELL = -1;
+	/** how large cell arrays are initially chosen */
+	private static final int EXPECTED_INTERFACE_COUNT = 5;
+
+	/** Interfaces of each cell, in the order they were added to the cell */
+	private NetworkInterface[][] cellInterfaces;
+	/** Number of interfaces in each cell */
+	private int[] cellSizes;
+	/** Cell index of each interface, indexed by the interface address */
+	private int[] interfaceCells;
+	/** All interfaces in the grid */
+	private List<NetworkInterface> interfaces;
 	private int cellSize;
 	private int rows;
 	private int cols;
+	/** Number of columns in the cell arrays (including the empty edges) */
+	private int rowLength;
 	private static int worldSizeX;
 	private static int worldSizeY;
 
@@ -72,15 +94,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
 		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
+		this.rowLength = cols + 2;
+		this.cellInterfaces = new NetworkInterface[(rows+2) * rowLength][];
+		this.cellSizes = new int[(rows+2) * rowLength];
 		this.cellSize = cellSize;
-
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		this.interfaceCells = new int[0];
+		this.interfaces = new ArrayList<NetworkInterface>();
 	}
 
 	/**
@@ -107,9 +126,19 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		int address = ni.getAddress();
+		if (address >= interfaceCells.length) {
+			int oldLength = interfaceCells.length;
+			interfaceCells = Arrays.copyOf(interfaceCells,
+					Math.max(address + 1, oldLength * 2));
+			Arrays.fill(interfaceCells, oldLength, interfaceCells.length,
+					NO_CELL);
+		}
+
+		int cell = cellFromCoord(ni.getLocation());
+		addToCell(cell, ni);
+		interfaceCells[address] = cell;
+		interfaces.add(ni);
 	}
 
 	/** 
@@ -117,11 +146,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		int cell = getCell(ni);
+		if (cell != NO_CELL) {
+			removeFromCell(cell, ni);
+			interfaceCells[ni.getAddress()] = NO_CELL;
+			interfaces.remove(ni);
 		}
-		ginterfaces.remove(ni);
 	}
 
 	/**
@@ -139,48 +169,87 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		int oldCell = interfaceCells[ni.getAddress()];
+		int newCell = cellFromCoord(ni.getLocation());
 
 		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+			addToCell(newCell, ni);
+			boolean removeOk = removeFromCell(oldCell, ni);
+			assert removeOk : "interface " + ni + 
+				" not found from cell " + oldCell;
+			interfaceCells[ni.getAddress()] = newCell;
 		}
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * Returns the cell index of an interface
+	 * @param ni The interface
+	 * @return The cell index or {@link #NO_CELL} if the interface is not in
+	 * the grid
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+	private int getCell(NetworkInterface ni) {
+		int address = ni.getAddress();
+		if (address < 0 || address >= interfaceCells.length) {
+			return NO_CELL;
+		}
+		return interfaceCells[address];
+	}
+
+	/**
+	 * Adds an interface to the end of a cell
+	 * @param cell Index of the cell
+	 * @param ni The interface to add
+	 */
+	private void addToCell(int cell, NetworkInterface ni) {
+		NetworkInterface[] cellArray = cellInterfaces[cell];
+		if (cellArray == null) {
+			cellArray = new NetworkInterface[EXPECTED_INTERFACE_COUNT];
+			cellInterfaces[cell] = cellArray;
+		}
+		else if (cellSizes[cell] == cellArray.length) {
+			cellArray = Arrays.copyOf(cellArray, cellArray.length * 2);
+			cellInterfaces[cell] = cellArray;
+		}
+		cellArray[cellSizes[cell]++] = ni;
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Removes an interface from a cell keeping the order of the rest
+	 * @param cell Index of the cell
+	 * @param ni The interface to remove
+	 * @return True if the interface was in the cell, false if not
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	private boolean removeFromCell(int cell, NetworkInterface ni) {
+		NetworkInterface[] cellArray = cellInterfaces[cell];
+		int size = cellSizes[cell];
+		for (int i = 0; i < size; i++) {
+			if (cellArray[i] == ni) {
+				System.arraycopy(cellArray, i + 1, cellArray, i, size - i - 1);
+				cellArray[--cellSizes[cell]] = null;
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
+	 * Adds all the interfaces of a cell to a list
+	 * @param cell Index of the cell
+	 * @param list The list to add the interfaces to
+	 */
+	private void addCellInterfaces(int cell, List<NetworkInterface> list) {
+		NetworkInterface[] cellArray = cellInterfaces[cell];
+		for (int i = 0, n = cellSizes[cell]; i < n; i++) {
+			list.add(cellArray[i]);
+		}
+	}
+
+	/**
+	 * Get the index of the cell having the specific coordinates
 	 * @param c Coordinates
-	 * @return The cell
+	 * @return Index of the cell
 	 */
-	private GridCell cellFromCoord(Coord c) {
+	private int cellFromCoord(Coord c) {
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1; 
 		int col = (int)(c.getX()/cellSize) + 1;
@@ -188,14 +257,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return row * rowLength + col;
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+		return Collections.unmodifiableList(interfaces);
 	}
 
 	/**
@@ -205,87 +274,72 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
 		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
-		GridCell loc = (GridCell)ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
-			}
-		}
+		getNearInterfaces(netinterf, ni);
 		return ni;
 	}
 
-
 	/**
-	 * Returns a string representation of the ConnectivityCells object
-	 * @return a string representation of the ConnectivityCells object
+	 * Adds all interfaces using the same technology and channel that are in
+	 * the neighboring cells (and the cell itself) of the interface's current
+	 * location to the list. The interfaces are added cell by cell, row by
+	 * row, in the order they entered the cells.
 	 */
-	public String toString() {
-		return getClass().getSimpleName() + " of size " + 
-			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	@Override
+	public void getNearInterfaces(NetworkInterface netinterf,
+			List<NetworkInterface> list) {
+		if (getCell(netinterf) == NO_CELL) {
+			return;
+		}
+
+		int center = cellFromCoord(netinterf.getLocation());
+		for (int row = center - rowLength; row <= center + rowLength;
+				row += rowLength) {
+			addCellInterfaces(row - 1, list);
+			addCellInterfaces(row, list);
+			addCellInterfaces(row + 1, list);
+		}
 	}
 
 	/**
-	 * A single cell in the cell grid. Contains the interfaces that are 
-	 * currently in that part of the grid.
+	 * Adds the interfaces of the forward half of the interface's
+	 * neighborhood to the list: the interfaces after it in its own cell, and
+	 * the interfaces of the next cell on the same row and of the three cells
+	 * on the next row. When this is done for all interfaces of the grid,
+	 * every pair of interfaces in neighboring cells is visited exactly once.
+	 * The cells are the ones where the interfaces were at their last
+	 * location update.
 	 */
-	public class GridCell {
-		// how large array is initially chosen
-		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;
-
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
-		}
-
-		/**
-		 * Returns a list of of interfaces in this cell
-		 * @return a list of of interfaces in this cell
-		 */
-		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
+	@Override
+	public void getHalfNearInterfaces(NetworkInterface netinterf,
+			List<NetworkInterface> list) {
+		int cell = getCell(netinterf);
+		if (cell == NO_CELL) {
+			return;
 		}
 
-		/**
-		 * Adds an interface to this cell
-		 * @param ni The interface to add
-		 */
-		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
+		NetworkInterface[] cellArray = cellInterfaces[cell];
+		int size = cellSizes[cell];
+		int i = 0;
+		while (i < size && cellArray[i] != netinterf) {
+			i++;
 		}
-
-		/**
-		 * Removes an interface from this cell
-		 * @param ni The interface to remove
-		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
+		for (i++; i < size; i++) {
+			list.add(cellArray[i]);
 		}
 
-		/**
-		 * Moves a interface in a Cell to another Cell
-		 * @param ni The interface to move
-		 * @param to The cell where the interface should be moved to
-		 */
-		public void moveInterface(NetworkInterface ni, GridCell to) {
-			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni); 
-			assert removeOk : "interface " + ni + 
-				" not found from cell with " + interfaces.toString();
-		}
+		addCellInterfaces(cell + 1, list);
+		addCellInterfaces(cell + rowLength - 1, list);
+		addCellInterfaces(cell + rowLength, list);
+		addCellInterfaces(cell + rowLength + 1, list);
+	}
 
-		/**
-		 * Returns a string representation of the cell
-		 * @return a string representation of the cell
-		 */
-		public String toString() {
-			return getClass().getSimpleName() + " with " + 
-				this.interfaces.size() + " interfaces :" + this.interfaces;
-		}
+	/**
+	 * Returns a string representation of the ConnectivityCells object
+	 * @return a string representation of the ConnectivityCells object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " + 
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
 	}
 	
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.List;
 
 import core.NetworkInterface;
 
@@ -40,6 +41,34 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Adds all network interfaces that might be located so that they can be
+	 * connected with the network interface to a list. This implementation
+	 * adds the interfaces returned by {@link #getNearInterfaces(
+	 * NetworkInterface)}; optimizers can override this to avoid creating a
+	 * new collection.
+	 * @param ni network interface that needs to be connected
+	 * @param list The list where the interfaces are added
+	 */
+	public void getNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> list) {
+		list.addAll(getNearInterfaces(ni));
+	}
+
+	/**
+	 * Adds the network interfaces that might be connected with the network
+	 * interface, so that when this is done for all the interfaces, each pair
+	 * of possibly connected interfaces is found (at least) once. This
+	 * implementation adds all near interfaces (i.e., each pair is found from
+	 * both sides).
+	 * @param ni network interface that needs to be connected
+	 * @param list The list where the interfaces are added
+	 */
+	public void getHalfNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> list) {
+		getNearInterfaces(ni, list);
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -4,25 +4,57 @@
  */
 package interfaces;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
 import core.Settings;
+import core.World;
 
 /**
  * A simple Network Interface that provides a constant bit-rate service, where
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	/** Possible new connections found by {@link #prepareUpdate()} (or null
+	 * if the update has not been prepared) */
+	private List<NetworkInterface> candidates = null;
+	/** Reused list for the near interfaces */
+	private List<NetworkInterface> nearInterfaces;
+	/** Should only the forward half of the neighborhood be checked for new
+	 * connections (see {@link World#HALF_NEIGHBORHOOD_S}) */
+	private boolean halfNeighborhood;
+	/** Are the hosts stationary (see {@link World#STATIC_TOPOLOGY_S}) */
+	private boolean staticTopology;
+	/** Interfaces within range in the static topology mode */
+	private List<NetworkInterface> inRange;
+	/** Number of range changes when {@link #inRange} was found */
+	private int inRangeChanges = -1;
+	/** Number of connection changes at the last connection check */
+	private int checkedChanges = -1;
+	/** Interfaces within range that were not connected at the last check */
+	private List<NetworkInterface> notConnected;
+
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
 	 */
 	public SimpleBroadcastInterface(Settings s)	{
 		super(s);
+		Settings optSettings = new Settings(World.SETTINGS_NS);
+		this.halfNeighborhood = optSettings.contains(
+				World.HALF_NEIGHBORHOOD_S) &&
+				optSettings.getBoolean(World.HALF_NEIGHBORHOOD_S);
+		this.staticTopology = optSettings.contains(
+				World.STATIC_TOPOLOGY_S) &&
+				optSettings.getBoolean(World.STATIC_TOPOLOGY_S);
+		this.nearInterfaces = new ArrayList<NetworkInterface>();
+		this.inRange = new ArrayList<NetworkInterface>();
+		this.notConnected = new ArrayList<NetworkInterface>();
 	}
 		
 	/**
@@ -31,6 +63,11 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 */
 	public SimpleBroadcastInterface(SimpleBroadcastInterface ni) {
 		super(ni);
+		this.halfNeighborhood = ni.halfNeighborhood;
+		this.staticTopology = ni.staticTopology;
+		this.nearInterfaces = new ArrayList<NetworkInterface>();
+		this.inRange = new ArrayList<NetworkInterface>();
+		this.notConnected = new ArrayList<NetworkInterface>();
 	}
 
 	public NetworkInterface replicate()	{
@@ -61,13 +98,117 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Finds the interfaces that are in range but not yet connected to this
+	 * interface. The next update tries to connect only to these.
+	 */
+	@Override
+	public void prepareUpdate() {
+		if (staticTopology) {
+			return; /* nothing to gain */
+		}
+		List<NetworkInterface> inRange = new ArrayList<NetworkInterface>();
+		nearInterfaces.clear();
+		optimizer.getNearInterfaces(this, nearInterfaces);
+		for (NetworkInterface i : nearInterfaces) {
+			if (i != this && isWithinRange(i) && !isConnected(i)) {
+				inRange.add(i);
+			}
+		}
+		this.candidates = inRange;
+	}
+
 	/**
 	 * Updates the state of current connections (ie tears down connections
 	 * that are out of range).
 	 */
 	public void update() {
+		if (staticTopology) {
+			updateStatic();
+			return;
+		}
+
 		// First break the old ones
 		optimizer.updateLocation(this);
+		removeOutOfRangeConnections();
+
+		// Then find new possible connections
+		Collection<NetworkInterface> interfaces;
+		if (this.candidates != null) { // prepared by prepareUpdate()
+			interfaces = this.candidates;
+			this.candidates = null;
+			isScanning(); // starts the scan round as an unprepared update
+		}
+		else {
+			findNearInterfaces();
+			interfaces = nearInterfaces;
+		}
+		for (NetworkInterface i : interfaces) {
+			connect(i);
+		}
+	}
+
+	/**
+	 * Updates the connections of a stationary host. The interfaces within
+	 * range are looked up again only after a range change, and the
+	 * connections are checked only if they have changed, or if an interface
+	 * within range that was not connected at the previous check is now
+	 * active.
+	 */
+	private void updateStatic() {
+		optimizer.updateLocation(this);
+		int rangeChanges = getRangeChanges();
+		boolean recheck = rangeChanges != this.inRangeChanges ||
+			getConnectionChanges() != this.checkedChanges;
+
+		if (recheck) {
+			removeOutOfRangeConnections();
+		}
+		if (rangeChanges != this.inRangeChanges) {
+			inRange.clear();
+			findNearInterfaces();
+			for (NetworkInterface i : nearInterfaces) {
+				if (i != this && isWithinRange(i)) {
+					inRange.add(i);
+				}
+			}
+			this.inRangeChanges = rangeChanges;
+		}
+		for (int i=0, n=notConnected.size(); i<n && !recheck; i++) {
+			recheck = notConnected.get(i).getHost().isActive();
+		}
+
+		isScanning(); // keep the scan rounds going
+		if (recheck) {
+			notConnected.clear();
+			for (NetworkInterface i : inRange) {
+				connect(i);
+				if (!isConnected(i)) {
+					notConnected.add(i);
+				}
+			}
+			this.checkedChanges = getConnectionChanges();
+		}
+	}
+
+	/**
+	 * Fills {@link #nearInterfaces} with the interfaces that should be
+	 * checked for new connections
+	 */
+	private void findNearInterfaces() {
+		nearInterfaces.clear();
+		if (halfNeighborhood) {
+			optimizer.getHalfNearInterfaces(this, nearInterfaces);
+		}
+		else {
+			optimizer.getNearInterfaces(this, nearInterfaces);
+		}
+	}
+
+	/**
+	 * Tears down the connections whose other end is out of range
+	 */
+	private void removeOutOfRangeConnections() {
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
 			NetworkInterface anotherInterface = con.getOtherInterface(this);
@@ -83,12 +224,6 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				i++;
 			}
 		}
-		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
 	}
 
 	/** 
@@ -5,21 +5,22 @@
 package report;
 
 import java.util.Collection;
-import java.util.HashMap;
 
 import core.ConnectionListener;
 import core.DTNHost;
 
 /**
- * Generates Graphviz compatible graph from connections.
+ * Generates Graphviz compatible graph from connections. The weight of an
+ * edge is the number of connections between the two hosts (in either
+ * direction).
  * Connections that happen during the warm up period are ignored.
  */
 public class AdjacencyGraphvizReport extends Report implements ConnectionListener {
 	/** Name of the graphviz report ({@value})*/
 	public static final String GRAPH_NAME = "adjgraph";
 	
-	private String HOST_DELIM = "<->"; // used in toString()
-	private HashMap<String, ConnectionInfo> cons;
+	/** the connections of the host pairs */
+	private ContactLedger cons;
 	private Collection<DTNHost> allHosts;
 	
 	/**
@@ -32,7 +33,7 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 	
 	protected void init() {
 		super.init();
-		this.cons = new HashMap<String, ConnectionInfo>();
+		this.cons = new ContactLedger();
 	}
 	
 		
@@ -42,14 +43,7 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		}
 		
 		newEvent();
-		ConnectionInfo ci = cons.get(host1+HOST_DELIM+host2);
-		
-		if (ci == null) {
-			cons.put(host1+HOST_DELIM+host2, new ConnectionInfo(host1,host2));
-		}
-		else {
-			ci.nrofConnections++;
-		}
+		cons.connected(host1, host2, getSimTime());
 	}
 
 	// 	Nothing to do here..
@@ -67,9 +61,10 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		write("graph " + GRAPH_NAME + " {");
 		setPrefix("\t"); // indent following lines by one tab
 		
-		for (ConnectionInfo ci : cons.values()) {
-			int weight = ci.nrofConnections;
-			write(ci.h1 + "--" + ci.h2 + " [weight=" + weight + "];");
+		for (int i = 0, n = cons.size(); i < n; i++) {
+			int weight = cons.getCount(i);
+			write(cons.getHost1(i) + "--" + cons.getHost2(i) + 
+					" [weight=" + weight + "];");
 		}
 		
 		// mention all hosts in the graph at least once
@@ -85,33 +80,4 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		super.done();
 	}
 
-	/**
-	 * Private class stores information of the connected hosts
-	 * and nrof times they have connected.
-	 */
-	private class ConnectionInfo {
-		private DTNHost h1;
-		private DTNHost h2;
-		private int nrofConnections;
-		
-		public ConnectionInfo(DTNHost h1, DTNHost h2) {
-			this.h1 = h1;
-			this.h2 = h2;
-			this.nrofConnections = 1;
-		}
-				
-		public boolean equals(Object o) {
-			return o.toString().equals(this.toString());
-		}
-		public int hashCode() {
-			return toString().hashCode();
-		}
-		public String toString() {
-			return h1+HOST_DELIM+h2;
-		}
-		public int compareTo(Object o) {
-			return nrofConnections - ((ConnectionInfo)o).nrofConnections;
-		}
-	}
-
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Settings;
+import core.SimError;
+import core.SimScenario;
+import core.SamplingUpdateListener;
+
+/**
+ * Reports the contact graph of every time window as neighbor lists in the
+ * format of the neighbor list files of the routers (see
+ * {@link input.NeighborListReader}), so the topology the hosts had during
+ * the simulation can be compared with the rewired topologies (or used as a
+ * neighbor list file). The report starts with the header
+ * <CODE>0 endTime</CODE> and every window is written as lines of<BR>
+ * <CODE>windowStart id neighborId1 neighborId2 ...</CODE><BR>
+ * where the ids are the numbers at the end of the host names (see
+ * {@link DTNHost#getNameId()}) and the neighbors are the hosts that were in
+ * contact with the host during the window. Hosts without neighbors are not
+ * listed. Windows that end during the warm up period are not reported.
+ */
+public class AdjacencySnapshotReport extends Report
+	implements ConnectionListener, SamplingUpdateListener {
+	/** Window length -setting id ({@value}). Seconds. Default = 900 */
+	public static final String WINDOW_S = "window";
+	/** Minimum contact time -setting id ({@value}). Hosts are neighbors in a
+	 * window only if they were in contact for at least this many seconds
+	 * during the window. Default = 0 (any contact) */
+	public static final String MIN_CONTACT_S = "minContactTime";
+	/** Default window length */
+	public static final double DEF_WINDOW = 900;
+
+	private double window;
+	private double minContactTime;
+	private ContactLedger contacts;
+
+	/**
+	 * Constructor.
+	 */
+	public AdjacencySnapshotReport() {
+		Settings settings = getSettings();
+		this.window = DEF_WINDOW;
+		if (settings.contains(WINDOW_S)) {
+			this.window = settings.getDouble(WINDOW_S);
+		}
+		this.minContactTime = 0;
+		if (settings.contains(MIN_CONTACT_S)) {
+			this.minContactTime = settings.getDouble(MIN_CONTACT_S);
+		}
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.contacts = new ContactLedger();
+		write(getHeader());
+	}
+
+	/**
+	 * Returns the header line of the neighbor lists for the current end
+	 * time setting
+	 * @return The header line
+	 */
+	private String getHeader() {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		return "0 " + (int)s.getDouble(SimScenario.END_TIME_S);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		newEvent();
+		this.contacts.connected(host1, host2, getSimTime());
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		this.contacts.disconnected(host1, host2, getSimTime());
+	}
+
+	/**
+	 * Writes the neighbor lists of the window and starts a new window when
+	 * the window length has passed
+	 */
+	public void updated(List<DTNHost> hosts) {
+		double simTime = getSimTime();
+		if (simTime - this.contacts.getWindowStart() < this.window) {
+			return;
+		}
+		if (!isWarmup()) {
+			writeWindow(simTime);
+		}
+		this.contacts.startWindow(simTime - simTime % this.window);
+	}
+
+	/**
+	 * Returns the end time of the current window
+	 */
+	public double getNextSampleTime() {
+		return this.contacts.getWindowStart() + this.window;
+	}
+
+	/**
+	 * Writes the neighbor lists of the current window
+	 * @param time End time of the window
+	 */
+	private void writeWindow(double time) {
+		Map<Integer, List<Integer>> neighbors =
+			new TreeMap<Integer, List<Integer>>();
+		for (int i = 0, n = this.contacts.size(); i < n; i++) {
+			if (!this.contacts.isInWindow(i) ||
+					this.contacts.getWindowTime(i, time) <
+					this.minContactTime) {
+				continue;
+			}
+			int id1 = this.contacts.getHost1(i).getNameId();
+			int id2 = this.contacts.getHost2(i).getNameId();
+			addNeighbor(neighbors, id1, id2);
+			addNeighbor(neighbors, id2, id1);
+		}
+
+		String windowStart = String.valueOf(
+				(int)this.contacts.getWindowStart());
+		for (Map.Entry<Integer, List<Integer>> e : neighbors.entrySet()) {
+			List<Integer> ids = e.getValue();
+			Collections.sort(ids);
+			StringBuilder sb = new StringBuilder(windowStart);
+			sb.append(' ').append(e.getKey());
+			for (Integer id : ids) {
+				sb.append(' ').append(id);
+			}
+			write(sb.toString());
+		}
+	}
+
+	/**
+	 * Adds a neighbor to the neighbor list of a host
+	 */
+	private void addNeighbor(Map<Integer, List<Integer>> neighbors, int id,
+			int neighborId) {
+		List<Integer> ids = neighbors.get(id);
+		if (ids == null) {
+			ids = new ArrayList<Integer>();
+			neighbors.put(id, ids);
+		}
+		ids.add(neighborId);
+	}
+
+	/**
+	 * Writes the snapshot and replaces the header of the copied output with
+	 * the end time of the snapshot
+	 */
+	@Override
+	protected void writeSnapshot(String horizonFileName,
+			String horizonScenarioName) {
+		super.writeSnapshot(horizonFileName, horizonScenarioName);
+		String fileName = horizonFileName;
+		if (!new File(fileName).exists()) { /* intervalled output */
+			fileName += String.format(INTERVALLED_FORMAT, 0);
+		}
+
+		List<String> lines = new ArrayList<String>();
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(fileName));
+			in.readLine(); /* the header of the whole run */
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines.add(line);
+			}
+			in.close();
+
+			PrintWriter fileOut = new PrintWriter(new FileWriter(fileName));
+			fileOut.println(getHeader());
+			for (String l : lines) {
+				fileOut.println(l);
+			}
+			fileOut.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write the header of '" + fileName +
+					"'\n" + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void done() {
+		double simTime = getSimTime();
+		if (!isWarmup() && simTime > this.contacts.getWindowStart()) {
+			writeWindow(simTime); /* the last, partial window */
+		}
+		super.done();
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writer that moves the writing of report output off the simulation thread.
+ * The text is collected to chunks on the writing (simulation) thread and
+ * full chunks are handed to a background thread through a bounded
+ * single-producer single-consumer ring buffer, so the writing thread only
+ * blocks if the background thread falls behind by the whole ring (i.e.,
+ * the output is written slower than it is produced). {@link #flush()}
+ * and {@link #close()} wait until all the text written so far has been
+ * written to the underlying writer.
+ * <P>
+ * Only one thread may write to the writer. Errors of the background thread
+ * are thrown (as IOExceptions) by the next write, flush or close.
+ * </P>
+ */
+public class AsyncWriter extends Writer {
+	/** Size of the chunks handed to the background thread (chars) */
+	public static final int CHUNK_SIZE = 64 * 1024;
+	/** Number of chunks the ring buffer holds */
+	public static final int RING_SIZE = 64;
+	/** How long the writing thread sleeps when waiting for the background
+	 * thread (ns) */
+	private static final long WAIT_NANOS = 100000;
+
+	private final Writer out;
+	private final Thread writerThread;
+	private final String[] ring;
+	private final int mask;
+	/** index of the next chunk the background thread writes */
+	private final AtomicLong head;
+	/** index of the next chunk the writing thread adds */
+	private final AtomicLong tail;
+	/** number of chunks written and flushed to the underlying writer */
+	private final AtomicLong flushed;
+	/** the chunk that is being collected */
+	private StringBuilder chunk;
+	private volatile boolean closed;
+	private volatile IOException error;
+
+	/**
+	 * Creates a writer and starts its background thread
+	 * @param out The writer where the text is written to
+	 * @param name Name of the output (for the name of the thread)
+	 */
+	public AsyncWriter(Writer out, String name) {
+		this.out = out;
+		this.ring = new String[RING_SIZE];
+		this.mask = RING_SIZE - 1;
+		this.head = new AtomicLong();
+		this.tail = new AtomicLong();
+		this.flushed = new AtomicLong();
+		this.chunk = new StringBuilder(CHUNK_SIZE);
+
+		this.writerThread = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "AsyncWriter-" + name);
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		checkState();
+		this.chunk.append(cbuf, off, len);
+		if (this.chunk.length() >= CHUNK_SIZE) {
+			handOver();
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		checkState();
+		this.chunk.append(str, off, off + len);
+		if (this.chunk.length() >= CHUNK_SIZE) {
+			handOver();
+		}
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		checkState();
+		this.chunk.append((char)c);
+		if (this.chunk.length() >= CHUNK_SIZE) {
+			handOver();
+		}
+	}
+
+	/**
+	 * Hands the collected text to the background thread and waits until
+	 * it has been written and flushed to the underlying writer
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkState();
+		if (this.chunk.length() > 0) {
+			handOver();
+		}
+		waitFlushed();
+	}
+
+	/**
+	 * Writes all the collected text, stops the background thread and
+	 * closes the underlying writer. Closing a closed writer has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			this.closed = true;
+			LockSupport.unpark(this.writerThread);
+			try {
+				this.writerThread.join();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("Interrupted while closing");
+			}
+			this.out.close();
+		}
+	}
+
+	/**
+	 * Throws an exception if the writer is closed or the background thread
+	 * has failed
+	 */
+	private void checkState() throws IOException {
+		if (this.error != null) {
+			throw this.error;
+		}
+		if (this.closed) {
+			throw new IOException("Writer closed");
+		}
+	}
+
+	/**
+	 * Throws an exception if the background thread has failed or stopped,
+	 * so waiting for it can't hang the writing thread
+	 */
+	private void checkWriterThread() throws IOException {
+		checkState();
+		if (!this.writerThread.isAlive()) {
+			throw new IOException("Background writer thread has stopped");
+		}
+	}
+
+	/**
+	 * Adds the collected chunk to the ring, waiting for free space if the
+	 * ring is full
+	 */
+	private void handOver() throws IOException {
+		long t = this.tail.get();
+		while (t - this.head.get() >= RING_SIZE) {
+			LockSupport.unpark(this.writerThread);
+			LockSupport.parkNanos(this, WAIT_NANOS);
+			checkWriterThread();
+		}
+		this.ring[(int)t & this.mask] = this.chunk.toString();
+		this.tail.lazySet(t + 1);
+		LockSupport.unpark(this.writerThread);
+		this.chunk.setLength(0);
+	}
+
+	/**
+	 * Waits until the background thread has written and flushed all the
+	 * chunks added to the ring
+	 */
+	private void waitFlushed() throws IOException {
+		long t = this.tail.get();
+		while (this.flushed.get() < t) {
+			LockSupport.unpark(this.writerThread);
+			LockSupport.parkNanos(this, WAIT_NANOS);
+			checkWriterThread();
+		}
+	}
+
+	/**
+	 * Main loop of the background thread: writes the chunks of the ring
+	 * until the writer is closed, and flushes the underlying writer whenever
+	 * the ring runs empty. Any failure stops the thread and is stored for
+	 * the writing thread (wrapped to an IOException if it isn't one).
+	 */
+	private void drain() {
+		try {
+			while (true) {
+				long h = this.head.get();
+				long t = this.tail.get();
+				if (h == t) {
+					if (this.flushed.get() < h) {
+						this.out.flush();
+						this.flushed.lazySet(h);
+					}
+					if (this.closed && this.tail.get() == h) {
+						return;
+					}
+					LockSupport.park(this); // the writing thread unparks
+					continue;
+				}
+				for (; h < t; h++) {
+					int i = (int)h & this.mask;
+					this.out.write(this.ring[i]);
+					this.ring[i] = null;
+					this.head.lazySet(h + 1);
+				}
+			}
+		} catch (IOException e) {
+			this.error = e;
+		} catch (Throwable e) {
+			this.error = new IOException("Writing the output failed: " + e, e);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import input.StandardEventsReader;
+
+/**
+ * Streaming reader of the binary event logs of the
+ * {@link BinaryEventLogReport}. The events are read one at a time with
+ * {@link #next()}, after which the getters return the values of the event.
+ * The host names and message IDs are resolved from the definitions of the
+ * log. The reader can also convert a log to the text format of the
+ * {@link EventLogReport}:<BR>
+ * <CODE>java report.BinaryEventLogReader log.binlog [log.txt]</CODE>
+ */
+public class BinaryEventLogReader {
+	private DataInputStream in;
+	private boolean compressed;
+	/** the records of the current block */
+	private DataInputStream records;
+	/** host names by address */
+	private List<String> hostNames;
+	/** message IDs by ID index */
+	private List<String> messageIds;
+
+	private byte type;
+	private double time;
+	private int host1;
+	private int host2;
+	private int idIndex;
+
+	/**
+	 * Opens a binary event log
+	 * @param fileName Path to the log file
+	 * @throws IOException if the file can't be read or it isn't a binary
+	 * event log
+	 */
+	public BinaryEventLogReader(String fileName) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(fileName)));
+		if (this.in.readInt() != BinaryEventLogReport.BINARY_MAGIC) {
+			this.in.close();
+			throw new IOException("Not a binary event log: " + fileName);
+		}
+		int version = this.in.readInt();
+		if (version != BinaryEventLogReport.BINARY_VERSION) {
+			this.in.close();
+			throw new IOException("Unsupported binary event log version " +
+					version + ": " + fileName);
+		}
+		this.compressed = (this.in.readByte() &
+				BinaryEventLogReport.FLAG_GZIP) != 0;
+		this.hostNames = new ArrayList<String>();
+		this.messageIds = new ArrayList<String>();
+	}
+
+	/**
+	 * Reads the next event of the log
+	 * @return True if an event was read, false if the log has no more events
+	 * @throws IOException if reading the log failed
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (this.records == null || this.records.available() == 0) {
+				if (!readBlock()) {
+					return false;
+				}
+			}
+
+			byte t = this.records.readByte();
+			if (t == BinaryEventLogReport.DEF_HOST) {
+				set(this.hostNames, this.records.readInt(),
+						this.records.readUTF());
+			}
+			else if (t == BinaryEventLogReport.DEF_MESSAGE) {
+				set(this.messageIds, this.records.readInt(),
+						this.records.readUTF());
+			}
+			else {
+				this.type = t;
+				this.time = this.records.readDouble();
+				this.host1 = this.records.readInt();
+				this.host2 = this.records.readInt();
+				this.idIndex = this.records.readInt();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Reads the next block of records
+	 * @return True if a block was read, false if the log has no more blocks
+	 */
+	private boolean readBlock() throws IOException {
+		int length;
+		try {
+			length = this.in.readInt();
+		} catch (EOFException e) {
+			return false;
+		}
+		byte[] stored = new byte[this.in.readInt()];
+		this.in.readFully(stored);
+
+		byte[] data = stored;
+		if (this.compressed) {
+			data = new byte[length];
+			DataInputStream gz = new DataInputStream(new GZIPInputStream(
+					new ByteArrayInputStream(stored)));
+			gz.readFully(data);
+			gz.close();
+		}
+		this.records = new DataInputStream(new ByteArrayInputStream(data));
+		return true;
+	}
+
+	/**
+	 * Sets a value of a list, growing the list if needed
+	 */
+	private static void set(List<String> list, int index, String value) {
+		while (list.size() <= index) {
+			list.add(null);
+		}
+		list.set(index, value);
+	}
+
+	/**
+	 * Returns the record type of the event (see the record type constants
+	 * of {@link BinaryEventLogReport})
+	 * @return The record type
+	 */
+	public byte getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the time of the event
+	 * @return The time of the event
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	/**
+	 * Returns the address of the first host of the event
+	 * @return The address or -1 if the event has no first host
+	 */
+	public int getHost1Address() {
+		return this.host1;
+	}
+
+	/**
+	 * Returns the address of the second host of the event
+	 * @return The address or -1 if the event has no second host
+	 */
+	public int getHost2Address() {
+		return this.host2;
+	}
+
+	/**
+	 * Returns the name of the first host of the event
+	 * @return The name or null if the event has no first host
+	 */
+	public String getHost1() {
+		return this.host1 < 0 ? null : this.hostNames.get(this.host1);
+	}
+
+	/**
+	 * Returns the name of the second host of the event
+	 * @return The name or null if the event has no second host
+	 */
+	public String getHost2() {
+		return this.host2 < 0 ? null : this.hostNames.get(this.host2);
+	}
+
+	/**
+	 * Returns the ID index of the message of the event
+	 * (see {@link core.Message#getIdIndex()})
+	 * @return The ID index or -1 if the event has no message
+	 */
+	public int getMessageIdIndex() {
+		return this.idIndex;
+	}
+
+	/**
+	 * Returns the ID of the message of the event
+	 * @return The ID or null if the event has no message
+	 */
+	public String getMessageId() {
+		return this.idIndex < 0 ? null : this.messageIds.get(this.idIndex);
+	}
+
+	/**
+	 * Returns the action of the event as in the {@link EventLogReport}
+	 * (see the action constants of {@link StandardEventsReader})
+	 * @return The action
+	 */
+	public String getAction() {
+		switch (this.type) {
+		case BinaryEventLogReport.CONN_UP:
+		case BinaryEventLogReport.CONN_DOWN:
+			return StandardEventsReader.CONNECTION;
+		case BinaryEventLogReport.CREATE:
+			return StandardEventsReader.CREATE;
+		case BinaryEventLogReport.SEND:
+			return StandardEventsReader.SEND;
+		case BinaryEventLogReport.ABORT:
+			return StandardEventsReader.ABORT;
+		case BinaryEventLogReport.DROP:
+			return StandardEventsReader.DROP;
+		case BinaryEventLogReport.REMOVE:
+			return StandardEventsReader.REMOVE;
+		default:
+			return StandardEventsReader.DELIVERED;
+		}
+	}
+
+	/**
+	 * Returns the extra info of the event as in the {@link EventLogReport}
+	 * @return The extra info or null if the event has none
+	 */
+	public String getExtra() {
+		switch (this.type) {
+		case BinaryEventLogReport.CONN_UP:
+			return StandardEventsReader.CONNECTION_UP;
+		case BinaryEventLogReport.CONN_DOWN:
+			return StandardEventsReader.CONNECTION_DOWN;
+		case BinaryEventLogReport.RELAYED:
+			return EventLogReport.MESSAGE_TRANS_RELAYED;
+		case BinaryEventLogReport.DELIVERED:
+			return EventLogReport.MESSAGE_TRANS_DELIVERED;
+		case BinaryEventLogReport.DELIVERED_AGAIN:
+			return EventLogReport.MESSAGE_TRANS_DELIVERED_AGAIN;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the event as a line of the {@link EventLogReport}
+	 * @return The line
+	 */
+	public String toText() {
+		return EventLogReport.formatEvent(this.time, getAction(),
+				getHost1(), getHost2(), getMessageId(), getExtra());
+	}
+
+	/**
+	 * Closes the log
+	 * @throws IOException if closing the file failed
+	 */
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * Converts a binary event log to the text format of the
+	 * {@link EventLogReport}
+	 * @param args The binary log and, optionally, the text file to create
+	 * (default is the log's name with the text report suffix)
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: java report.BinaryEventLogReader " +
+					"<binary event log> [text file]");
+			System.exit(-1);
+		}
+
+		String outFile = args.length > 1 ? args[1] :
+			args[0].replaceFirst("\\" + BinaryEventLogReport.BINARY_EXT + "$",
+					"") + Report.OUT_SUFFIX;
+		try {
+			BinaryEventLogReader reader = new BinaryEventLogReader(args[0]);
+			PrintWriter out = new PrintWriter(new BufferedWriter(
+					new FileWriter(outFile), 64 * 1024));
+			while (reader.next()) {
+				out.println(reader.toText());
+			}
+			reader.close();
+			out.close();
+		} catch (IOException e) {
+			System.err.println("Failed to convert " + args[0] + ": " + e);
+			System.exit(-1);
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimError;
+
+/**
+ * Binary version of the {@link EventLogReport}. Every event is stored as a
+ * fixed-width record instead of a line of text, and host names and message
+ * IDs are stored only once, so the log is much faster to write and to read
+ * back (see {@link BinaryEventLogReader}). The reader can also convert the
+ * log to the text format of the {@link EventLogReport}:<BR>
+ * <CODE>java report.BinaryEventLogReader log.binlog [log.txt]</CODE>
+ * <P>
+ * All values are stored as big-endian numbers. The file starts with a header
+ * of an identifier, the format version (int) and flags (byte, see
+ * {@link #FLAG_GZIP}). The rest of the file is blocks of records: the
+ * length of the records (int), the length of the stored block (int), and
+ * the records, GZIP compressed if the flag is set. Every record starts with
+ * its type (byte). Event records (types {@link #CONN_UP} ...
+ * {@link #DELIVERED_AGAIN}) continue with the time (double), the addresses
+ * of the first and second host, and the ID index of the message (ints, -1
+ * if the event has no such host or message). Definition records give the
+ * name of a host address ({@link #DEF_HOST}: int, UTF string) or the ID of a
+ * message ID index ({@link #DEF_MESSAGE}: int, UTF string) before the first
+ * event that uses them.
+ * </P>
+ */
+public class BinaryEventLogReport extends Report
+	implements ConnectionListener, MessageListener {
+	/** Extension of the binary event log files */
+	public static final String BINARY_EXT = ".binlog";
+	/** Compress the blocks -setting id ({@value}). Boolean. If true, the
+	 * record blocks are GZIP compressed. Default = true. */
+	public static final String COMPRESS_S = "compress";
+
+	/** Identifier in the beginning of binary event logs */
+	static final int BINARY_MAGIC = 0x4F4E454C; /* "ONEL" */
+	/** Version of the binary format */
+	static final int BINARY_VERSION = 1;
+	/** Header flag for GZIP compressed blocks */
+	static final int FLAG_GZIP = 1;
+	/** Size of the record blocks before compression (bytes) */
+	static final int BLOCK_SIZE = 64 * 1024;
+
+	/** Record type of connection up events */
+	public static final byte CONN_UP = 1;
+	/** Record type of connection down events */
+	public static final byte CONN_DOWN = 2;
+	/** Record type of message creation events */
+	public static final byte CREATE = 3;
+	/** Record type of message transfer start events */
+	public static final byte SEND = 4;
+	/** Record type of message transfer abort events */
+	public static final byte ABORT = 5;
+	/** Record type of message drop events */
+	public static final byte DROP = 6;
+	/** Record type of message remove events */
+	public static final byte REMOVE = 7;
+	/** Record type of message relay events */
+	public static final byte RELAYED = 8;
+	/** Record type of first delivery events */
+	public static final byte DELIVERED = 9;
+	/** Record type of repeated delivery events */
+	public static final byte DELIVERED_AGAIN = 10;
+	/** Record type of host name definitions */
+	public static final byte DEF_HOST = 100;
+	/** Record type of message ID definitions */
+	public static final byte DEF_MESSAGE = 101;
+
+	private boolean compress;
+	private DataOutputStream fileOut;
+	/** the records of the current block */
+	private ByteArrayOutputStream block;
+	private DataOutputStream recordOut;
+	/** host names already defined in the log, by address */
+	private List<String> hostNames;
+	/** ID indexes of the messages already defined in the log */
+	private BitSet messageIds;
+
+	/**
+	 * Constructor.
+	 */
+	public BinaryEventLogReport() {
+		this.compress = true;
+		if (getSettings().contains(COMPRESS_S)) {
+			this.compress = getSettings().getBoolean(COMPRESS_S);
+		}
+		this.hostNames = new ArrayList<String>();
+		this.messageIds = new BitSet();
+		this.block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+		this.recordOut = new DataOutputStream(this.block);
+
+		String fileName = getOutputFileName();
+		try {
+			this.fileOut = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(fileName)));
+			this.fileOut.writeInt(BINARY_MAGIC);
+			this.fileOut.writeInt(BINARY_VERSION);
+			this.fileOut.writeByte(this.compress ? FLAG_GZIP : 0);
+		} catch (IOException e) {
+			throw new SimError("Couldn't open file '" + fileName +
+					"' for report output\n" + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected String getOutputSuffix() {
+		return BINARY_EXT;
+	}
+
+	/**
+	 * Writes an event record (and the definitions it needs)
+	 * @param type Type of the record
+	 * @param host1 First host involved in the event (if any, or null)
+	 * @param host2 Second host involved in the event (if any, or null)
+	 * @param message The message involved in the event (if any, or null)
+	 */
+	private void processEvent(byte type, DTNHost host1, DTNHost host2,
+			Message message) {
+		try {
+			int address1 = defineHost(host1);
+			int address2 = defineHost(host2);
+			int idIndex = -1;
+			if (message != null) {
+				idIndex = message.getIdIndex();
+				if (!this.messageIds.get(idIndex)) {
+					this.recordOut.writeByte(DEF_MESSAGE);
+					this.recordOut.writeInt(idIndex);
+					this.recordOut.writeUTF(message.getId());
+					this.messageIds.set(idIndex);
+				}
+			}
+
+			this.recordOut.writeByte(type);
+			this.recordOut.writeDouble(getSimTime());
+			this.recordOut.writeInt(address1);
+			this.recordOut.writeInt(address2);
+			this.recordOut.writeInt(idIndex);
+
+			if (this.block.size() >= BLOCK_SIZE) {
+				writeBlock();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write binary event log\n" +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes a host name definition if the host's name isn't defined yet
+	 * (or it has changed)
+	 * @param host The host or null
+	 * @return Address of the host or -1 for null
+	 */
+	private int defineHost(DTNHost host) throws IOException {
+		if (host == null) {
+			return -1;
+		}
+		int address = host.getAddress();
+		while (this.hostNames.size() <= address) {
+			this.hostNames.add(null);
+		}
+		String name = host.toString();
+		if (!name.equals(this.hostNames.get(address))) {
+			this.recordOut.writeByte(DEF_HOST);
+			this.recordOut.writeInt(address);
+			this.recordOut.writeUTF(name);
+			this.hostNames.set(address, name);
+		}
+		return address;
+	}
+
+	/**
+	 * Writes the records collected so far as a block to the file
+	 */
+	private void writeBlock() throws IOException {
+		if (this.block.size() == 0) {
+			return;
+		}
+		byte[] stored;
+		if (this.compress) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+					this.block.size() / 4);
+			GZIPOutputStream gz = new GZIPOutputStream(bytes);
+			this.block.writeTo(gz);
+			gz.close();
+			stored = bytes.toByteArray();
+		}
+		else {
+			stored = this.block.toByteArray();
+		}
+		this.fileOut.writeInt(this.block.size());
+		this.fileOut.writeInt(stored.length);
+		this.fileOut.write(stored);
+		this.block.reset();
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		processEvent(CONN_UP, host1, host2, null);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		processEvent(CONN_DOWN, host1, host2, null);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		processEvent(dropped ? DROP : REMOVE, where, null, m);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		byte type;
+		if (firstDelivery) {
+			type = DELIVERED;
+		}
+		else if (to == m.getTo()) {
+			type = DELIVERED_AGAIN;
+		}
+		else {
+			type = RELAYED;
+		}
+
+		processEvent(type, from, to, m);
+	}
+
+	public void newMessage(Message m) {
+		processEvent(CREATE, m.getFrom(), null, m);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		processEvent(ABORT, from, to, m);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		processEvent(SEND, from, to, m);
+	}
+
+	/**
+	 * Copies the log written so far to the snapshot's file. The blocks are
+	 * self-contained, so the copy is a complete log.
+	 */
+	@Override
+	protected void writeSnapshot(String horizonFileName,
+			String horizonScenarioName) {
+		try {
+			writeBlock();
+			this.fileOut.flush();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write binary event log\n" +
+					e.getMessage(), e);
+		}
+		copyFile(getOutputFileName(), horizonFileName);
+	}
+
+	@Override
+	public void done() {
+		try {
+			writeBlock();
+			this.fileOut.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write binary event log\n" +
+					e.getMessage(), e);
+		}
+		super.done();
+	}
+}
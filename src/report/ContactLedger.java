@@ -0,0 +1,392 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+
+/**
+ * Ledger of the contacts between pairs of hosts. The pairs are keyed by
+ * the network addresses of the hosts packed into a long (smaller address
+ * first), so a contact of hosts A and B is the same as a contact of B and
+ * A. The keys are kept in an open addressing hash table and the values of
+ * the pairs in plain arrays indexed by the pair's entry number, so
+ * recording a contact creates no objects.
+ * <P>
+ * For every pair the ledger keeps the number of contacts, the start time
+ * of the contact that is up, the time of the last disconnection and the
+ * cumulative duration of the ended contacts. The entries are numbered
+ * 0...{@link #size()}-1 in the order the pairs were first seen.
+ * </P>
+ * <P>
+ * The ledger can also collect the contacts of a time window (see
+ * {@link #startWindow(double)}): the number of contacts started in the
+ * window and the time the pair was in contact during the window.
+ * </P>
+ */
+public class ContactLedger {
+	/** Initial number of entries */
+	private static final int INIT_CAPACITY = 64;
+
+	/** hash table of entry number + 1 (0 for a free slot) */
+	private int[] table;
+	/** number of entries */
+	private int size;
+
+	/** packed address pairs of the entries */
+	private long[] keys;
+	/** hosts by address */
+	private DTNHost[] hosts;
+	private int[] counts;
+	/** start times of the contacts that are up (NaN if down) */
+	private double[] upTimes;
+	/** times of the last disconnections (NaN if never disconnected) */
+	private double[] downTimes;
+	private double[] contactTimes;
+	/** sum of the durations of all ended contacts */
+	private double totalContactTime;
+	/** entry numbers of the contacts that are up */
+	private int[] open;
+	/** positions of the entries in {@link #open} */
+	private int[] openIndexes;
+	/** number of contacts that are up */
+	private int nrofOpen;
+
+	private double windowStart;
+	private int[] windowCounts;
+	private double[] windowTimes;
+
+	/**
+	 * Creates an empty ledger
+	 */
+	public ContactLedger() {
+		this.table = new int[2 * INIT_CAPACITY];
+		this.hosts = new DTNHost[INIT_CAPACITY];
+		this.keys = new long[INIT_CAPACITY];
+		this.counts = new int[INIT_CAPACITY];
+		this.upTimes = new double[INIT_CAPACITY];
+		this.downTimes = new double[INIT_CAPACITY];
+		this.contactTimes = new double[INIT_CAPACITY];
+		this.windowCounts = new int[INIT_CAPACITY];
+		this.windowTimes = new double[INIT_CAPACITY];
+		this.open = new int[INIT_CAPACITY];
+		this.openIndexes = new int[INIT_CAPACITY];
+		this.nrofOpen = 0;
+		this.size = 0;
+		this.totalContactTime = 0;
+		this.windowStart = 0;
+	}
+
+	/**
+	 * Returns the key of a pair of addresses
+	 * @param a1 The first address
+	 * @param a2 The second address
+	 * @return The smaller address in the high and the bigger address in the
+	 * low 32 bits
+	 */
+	public static long key(int a1, int a2) {
+		if (a1 > a2) {
+			int tmp = a1;
+			a1 = a2;
+			a2 = tmp;
+		}
+		return ((long)a1 << 32) | (a2 & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the slot of the hash table where a key is or should be put to
+	 */
+	private int slotOf(long key) {
+		int mask = this.table.length - 1;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int)(h ^ (h >>> 32)) & mask;
+		while (this.table[slot] != 0 &&
+				this.keys[this.table[slot] - 1] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the entry number of a pair of hosts
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return The entry number or -1 if the pair has no entry
+	 */
+	public int getEntry(DTNHost h1, DTNHost h2) {
+		return this.table[slotOf(key(h1.getAddress(), h2.getAddress()))] - 1;
+	}
+
+	/**
+	 * Returns the entry number of a pair of hosts, creating the entry if
+	 * the pair has none
+	 */
+	private int entry(DTNHost h1, DTNHost h2) {
+		long key = key(h1.getAddress(), h2.getAddress());
+		int slot = slotOf(key);
+		if (this.table[slot] != 0) {
+			return this.table[slot] - 1;
+		}
+
+		if (this.size == this.keys.length) {
+			grow();
+			slot = slotOf(key);
+		}
+		int e = this.size++;
+		this.table[slot] = e + 1;
+		this.keys[e] = key;
+		this.counts[e] = 0;
+		this.upTimes[e] = Double.NaN;
+		this.downTimes[e] = Double.NaN;
+		this.contactTimes[e] = 0;
+		this.windowCounts[e] = 0;
+		this.windowTimes[e] = 0;
+		setHost(h1);
+		setHost(h2);
+		return e;
+	}
+
+	/**
+	 * Stores a host to the hosts-by-address array
+	 */
+	private void setHost(DTNHost host) {
+		int address = host.getAddress();
+		if (address >= this.hosts.length) {
+			this.hosts = Arrays.copyOf(this.hosts,
+					Math.max(address + 1, 2 * this.hosts.length));
+		}
+		this.hosts[address] = host;
+	}
+
+	/**
+	 * Doubles the capacity of the entry arrays and rehashes the keys
+	 */
+	private void grow() {
+		int capacity = 2 * this.keys.length;
+		this.keys = Arrays.copyOf(this.keys, capacity);
+		this.counts = Arrays.copyOf(this.counts, capacity);
+		this.upTimes = Arrays.copyOf(this.upTimes, capacity);
+		this.downTimes = Arrays.copyOf(this.downTimes, capacity);
+		this.contactTimes = Arrays.copyOf(this.contactTimes, capacity);
+		this.windowCounts = Arrays.copyOf(this.windowCounts, capacity);
+		this.windowTimes = Arrays.copyOf(this.windowTimes, capacity);
+		this.open = Arrays.copyOf(this.open, capacity);
+		this.openIndexes = Arrays.copyOf(this.openIndexes, capacity);
+
+		this.table = new int[2 * capacity];
+		for (int e = 0; e < this.size; e++) {
+			this.table[slotOf(this.keys[e])] = e + 1;
+		}
+	}
+
+	/**
+	 * Records the start of a contact between two hosts
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @param time Time of the connection
+	 * @return The entry number of the pair
+	 */
+	public int connected(DTNHost h1, DTNHost h2, double time) {
+		int e = entry(h1, h2);
+		this.counts[e]++;
+		this.windowCounts[e]++;
+		if (Double.isNaN(this.upTimes[e])) {
+			this.openIndexes[e] = this.nrofOpen;
+			this.open[this.nrofOpen++] = e;
+		}
+		this.upTimes[e] = time;
+		return e;
+	}
+
+	/**
+	 * Records the end of a contact between two hosts. If the ledger has no
+	 * contact up between the hosts, only the time of the disconnection is
+	 * recorded (if the pair has an entry).
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @param time Time of the disconnection
+	 * @return Duration of the contact or -1 if no contact was up
+	 */
+	public double disconnected(DTNHost h1, DTNHost h2, double time) {
+		int e = getEntry(h1, h2);
+		if (e < 0) {
+			return -1;
+		}
+		this.downTimes[e] = time;
+		double up = this.upTimes[e];
+		if (Double.isNaN(up)) {
+			return -1;
+		}
+
+		double duration = time - up;
+		this.contactTimes[e] += duration;
+		this.totalContactTime += duration;
+		this.windowTimes[e] += time - Math.max(up, this.windowStart);
+		this.upTimes[e] = Double.NaN;
+
+		/* move the last open contact to the place of this one */
+		int last = this.open[--this.nrofOpen];
+		this.open[this.openIndexes[e]] = last;
+		this.openIndexes[last] = this.openIndexes[e];
+		return duration;
+	}
+
+	/**
+	 * Returns the number of entries (host pairs) in the ledger
+	 * @return The number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the host of an entry with the smaller address
+	 * @param entry The entry number
+	 * @return The host
+	 */
+	public DTNHost getHost1(int entry) {
+		return this.hosts[(int)(this.keys[entry] >>> 32)];
+	}
+
+	/**
+	 * Returns the host of an entry with the bigger address
+	 * @param entry The entry number
+	 * @return The host
+	 */
+	public DTNHost getHost2(int entry) {
+		return this.hosts[(int)this.keys[entry]];
+	}
+
+	/**
+	 * Returns the number of contacts of an entry
+	 * @param entry The entry number
+	 * @return The number of contacts
+	 */
+	public int getCount(int entry) {
+		return this.counts[entry];
+	}
+
+	/**
+	 * Returns true if the contact of an entry is up
+	 * @param entry The entry number (or -1)
+	 * @return True if the entry exists and its contact is up
+	 */
+	public boolean isUp(int entry) {
+		return entry >= 0 && !Double.isNaN(this.upTimes[entry]);
+	}
+
+	/**
+	 * Returns the start time of the last contact of an entry
+	 * @param entry The entry number
+	 * @return The start time or NaN if the contact is not up
+	 */
+	public double getUpTime(int entry) {
+		return this.upTimes[entry];
+	}
+
+	/**
+	 * Returns the time of the last disconnection of an entry
+	 * @param entry The entry number
+	 * @return The time or NaN if the pair hasn't been disconnected
+	 */
+	public double getDownTime(int entry) {
+		return this.downTimes[entry];
+	}
+
+	/**
+	 * Returns the cumulative duration of the ended contacts of an entry
+	 * @param entry The entry number
+	 * @return The cumulative duration
+	 */
+	public double getContactTime(int entry) {
+		return this.contactTimes[entry];
+	}
+
+	/**
+	 * Returns the sum of the durations of all ended contacts
+	 * @return The sum of the durations
+	 */
+	public double getTotalContactTime() {
+		return this.totalContactTime;
+	}
+
+	/**
+	 * Returns the sum of the durations of the contacts that are up
+	 * @param time The current time
+	 * @return The sum of the durations so far
+	 */
+	public double getOpenContactTime(double time) {
+		double sum = 0;
+		for (int i = 0; i < this.nrofOpen; i++) {
+			sum += time - this.upTimes[this.open[i]];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of contacts that are up
+	 * @return The number of contacts that are up
+	 */
+	public int getNrofOpen() {
+		return this.nrofOpen;
+	}
+
+	/**
+	 * Starts a new time window: clears the window counts and times of all
+	 * entries
+	 * @param time Start time of the window
+	 */
+	public void startWindow(double time) {
+		this.windowStart = time;
+		Arrays.fill(this.windowCounts, 0, this.size, 0);
+		Arrays.fill(this.windowTimes, 0, this.size, 0);
+	}
+
+	/**
+	 * Returns the start time of the current window
+	 * @return The start time
+	 */
+	public double getWindowStart() {
+		return this.windowStart;
+	}
+
+	/**
+	 * Returns the number of contacts of an entry started in the current
+	 * window
+	 * @param entry The entry number
+	 * @return The number of contacts
+	 */
+	public int getWindowCount(int entry) {
+		return this.windowCounts[entry];
+	}
+
+	/**
+	 * Returns the time an entry has been in contact during the current
+	 * window (including the contact that is up)
+	 * @param entry The entry number
+	 * @param time The current time
+	 * @return The contact time
+	 */
+	public double getWindowTime(int entry, double time) {
+		double t = this.windowTimes[entry];
+		double up = this.upTimes[entry];
+		if (!Double.isNaN(up)) {
+			t += time - Math.max(up, this.windowStart);
+		}
+		return t;
+	}
+
+	/**
+	 * Returns true if the hosts of an entry have been in contact during
+	 * the current window
+	 * @param entry The entry number
+	 * @return True if the hosts have been in contact
+	 */
+	public boolean isInWindow(int entry) {
+		return this.windowCounts[entry] > 0 || this.windowTimes[entry] > 0 ||
+			!Double.isNaN(this.upTimes[entry]);
+	}
+}
@@ -4,7 +4,6 @@
  */
 package report;
 
-import java.util.HashMap;
 import java.util.Vector;
 
 import core.ConnectionListener;
@@ -18,7 +17,8 @@ import core.Settings;
  * <code>time nrofContacts</code>
  */
 public class ContactTimesReport extends Report implements ConnectionListener {
-	protected HashMap<ConnectionInfo, ConnectionInfo> connections;
+	/** the contacts of the host pairs */
+	protected ContactLedger connections;
 	private Vector<Integer> nrofContacts;
 	
 	/** Granularity -setting id ({@value}). Defines how many simulated seconds
@@ -45,7 +45,7 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.connections = new HashMap<ConnectionInfo,ConnectionInfo>();
+		this.connections = new ContactLedger();
 		this.nrofContacts = new Vector<Integer>();
 	}
 		
@@ -58,29 +58,36 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
+		double time = removeConnection(host1, host2);
 		
-		if (ci == null) {
+		if (time < 0) {
 			return; /* the connection was started during the warm up period */
 		}
 		
-		ci.connectionEnd();
-		increaseTimeCount(ci.getConnectionTime());
+		increaseTimeCount(time);
 	}
 	
+	/**
+	 * Records the start of a connection between two hosts
+	 * @param host1 The first host
+	 * @param host2 The second host
+	 */
 	protected void addConnection(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = new ConnectionInfo(host1, host2);
+		assert !connections.isUp(connections.getEntry(host1, host2)) : 
+			"Already contained a connection of " + host1 + " and " + host2;
 		
-		assert !connections.containsKey(ci) : "Already contained "+
-			" a connection of " + host1 + " and " + host2;
-		
-		connections.put(ci,ci);
+		connections.connected(host1, host2, getSimTime());
 	}
 	
-	protected ConnectionInfo removeConnection(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = new ConnectionInfo(host1, host2);
-		ci = connections.remove(ci);
-		return ci;
+	/**
+	 * Records the end of a connection between two hosts
+	 * @param host1 The first host
+	 * @param host2 The second host
+	 * @return Duration of the connection or -1 if the start of the 
+	 * connection wasn't recorded
+	 */
+	protected double removeConnection(DTNHost host1, DTNHost host2) {
+		return connections.disconnected(host1, host2, getSimTime());
 	}
 		
 	/**
@@ -120,94 +127,5 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 		super.done();
 	}
 
-	
-	/**
-	 * Objects of this class store time information about contacts.
-	 */
-	protected class ConnectionInfo {
-		private double startTime;
-		private double endTime;
-		private DTNHost h1;
-		private DTNHost h2;
-		
-		public ConnectionInfo (DTNHost h1, DTNHost h2){
-			this.h1 = h1;
-			this.h2 = h2;
-			this.startTime = getSimTime();
-			this.endTime = -1;
-		}
-		
-		/**
-		 * Should be called when the connection ended to record the time.
-		 * Otherwise {@link #getConnectionTime()} will use end time as
-		 * the time of the request.
-		 */
-		public void connectionEnd() {
-			this.endTime = getSimTime();
-		}
-		
-		/**
-		 * Returns the time that passed between creation of this info 
-		 * and call to {@link #connectionEnd()}. Unless connectionEnd() is 
-		 * called, the difference between start time and current sim time
-		 * is returned.
-		 * @return The amount of simulated seconds passed between creation of
-		 * this info and calling connectionEnd()
-		 */
-		public double getConnectionTime() {
-			if (this.endTime == -1) {
-				return getSimTime() - this.startTime;
-			}			
-			else {
-				return this.endTime - this.startTime;
-			}
-		}
-		
-		/**
-		 * Returns true if the other connection info contains the same hosts. 
-		 */
-		public boolean equals(Object other) {
-			if (!(other instanceof ConnectionInfo)) {
-				return false;
-			}
-			
-			ConnectionInfo ci = (ConnectionInfo)other;
-
-			if ((h1 == ci.h1 && h2 == ci.h2)) {
-				return true;
-			}
-			else if ((h1 == ci.h2 && h2 == ci.h1)) {
-				// bidirectional connection the other way
-				return true;
-			}
-			return false;
-		}
-		
-		/**
-		 * Returns the same hash for ConnectionInfos that have the
-		 * same two hosts.
-		 * @return Hash code
-		 */
-		public int hashCode() {
-			String hostString;
 
-			if (this.h1.compareTo(this.h2) < 0) {
-				hostString = h1.toString() + "-" + h2.toString();
-			}
-			else {
-				hostString = h2.toString() + "-" + h1.toString();
-			}
-			
-			return hostString.hashCode();
-		}
-		
-		/**
-		 * Returns a string representation of the info object
-		 * @return a string representation of the info object
-		 */
-		public String toString() {
-			return this.h1 + "<->" + this.h2 + " [" + this.startTime
-				+"-"+ (this.endTime >0 ? this.endTime : "n/a") + "]";
-		}
-	}
 }
@@ -5,19 +5,32 @@
 package report;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.FieldPosition;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 
+import routing.EnergyEngine;
 import core.DTNHost;
+import core.HostRole;
 import core.Settings;
-import core.UpdateListener;
+import core.SamplingUpdateListener;
 
 /**
  * Node energy level report. Reports the energy level of all (or only some) 
  * nodes every configurable-amount-of seconds. Writes reports only after
- * the warmup period.
+ * the warmup period. The reported nodes and their order are resolved at the
+ * first snapshot, so a snapshot only reads the energy levels of the nodes.
+ * With the {@link #COLUMNAR_S} setting, every snapshot is written as one
+ * comma separated row, which keeps the output compact and fast to write
+ * even with small granularity and large numbers of nodes.
  */
-public class EnergyLevelReport extends Report implements UpdateListener {
+public class EnergyLevelReport extends Report
+	implements SamplingUpdateListener {
 	/** Reporting granularity -setting id ({@value}). 
 	 * Defines the interval how often (seconds) a new snapshot of energy levels
 	 * is created */
@@ -25,12 +38,34 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 	/** Optional reported nodes (comma separated list of network addresses). 
 	 * By default all nodes are reported. */
 	public static final String REPORTED_NODES = "nodes";
+	/** Columnar output -setting id ({@value}). Boolean. If true, the report 
+	 * starts with a header row of the node names and every snapshot is 
+	 * written as one comma separated row of the time, the energy levels of 
+	 * the nodes (with "." as the decimal separator, empty for nodes that 
+	 * have no energy value), the total energy of the survivor nodes and the 
+	 * number of alive survivor nodes. Default = false. */
+	public static final String COLUMNAR_S = "columnar";
 	/** value of the granularity setting */
 	protected final int granularity;
 	/** time of last update*/
 	protected double lastUpdate; 
 	/** Networks addresses (integers) of the nodes which are reported */
 	protected HashSet<Integer> reportedNodes;
+	/** write the snapshots as columnar rows */
+	private boolean columnar;
+	/** the reported hosts in column order (null before the first 
+	 * snapshot) */
+	private DTNHost[] columnHosts;
+	/** are the reported hosts survivor nodes */
+	private boolean[] survivors;
+	/** number of survivor nodes in the world */
+	private int survivorCount;
+	/** energy levels of the latest snapshot in column order */
+	private double[] levels;
+	/** the columnar row that is being written */
+	private StringBuffer row;
+	private DecimalFormat rowFormat;
+	private FieldPosition fieldPos;
 	
 	/**
 	 * Constructor. Reads the settings and initializes the report module.
@@ -50,6 +85,11 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 			this.reportedNodes = null;
 		}
 		
+		this.columnar = false;
+		if (settings.contains(COLUMNAR_S)) {
+			this.columnar = settings.getBoolean(COLUMNAR_S);
+		}
+		
 		init();
 	}
 
@@ -71,57 +111,132 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 	}
 	
 	/**
-	 * Creates a snapshot of energy levels 
+	 * Returns the time when the next snapshot is created
+	 */
+	public double getNextSampleTime() {
+		return Math.max(this.lastUpdate + this.granularity, this.warmupTime);
+	}
+	
+	/**
+	 * Resolves the reported hosts and their column order, and writes the
+	 * header row of the columnar output
 	 * @param hosts The list of hosts in the world
 	 */
-	private void createSnapshot(List<DTNHost> hosts) {
-		//write ("[" + (int)getSimTime() + "]"); /* simulation time stamp */
-		double totEnergy = 0;
-		int deadNodesNum = 0;
-		int countOfSNs = 0;
+	private void initColumns(List<DTNHost> hosts) {
+		EnergyEngine energy = EnergyEngine.getEngine();
+		List<DTNHost> reported = new ArrayList<DTNHost>();
+		this.survivorCount = 0;
 		for (DTNHost h : hosts) {
-			if(h.toString().startsWith("n")){
-				countOfSNs++;
+			HostRole role = h.getRole();
+			if (role == HostRole.SURVIVOR) {
+				this.survivorCount++;
 			}
-		}
-		for (DTNHost h : hosts) {
-			if(h.toString().startsWith("CD") || h.toString().startsWith("CS") || h.toString().startsWith("G"))
+			if (role == HostRole.DATA_MULE || 
+					role == HostRole.COORDINATION_CENTER || 
+					role == HostRole.GROUP_G) {
 				continue;
-			
+			}
 			if (this.reportedNodes != null && 
 				!this.reportedNodes.contains(h.getAddress())) {
 				continue; /* node not in the list */
 			}
-			Double value = (Double)h.getComBus().getProperty("Energy.value");
-			//Double totalValue = (Double)h.getComBus().getProperty("TotalEnergy.value");
-			//Double value = h.getCurEnergy();
-			if (value == null) {
-				//throw new SimError("Host " + h + 
-					//	" is not using an energy aware router");
-				continue;
-			}
-			if(h.toString().startsWith("n")){
-				totEnergy+= value;
+			if (this.columnar && Double.isNaN(energy.getEnergy(h))) {
+				continue; /* not using an energy aware router */
 			}
-			if(value<=0)
-				deadNodesNum += 1;
-			//Boolean isRelayExemplar = (Boolean) h.getComBus().getProperty("Host.isRelayExemplar");
-			//List<Connection> connections =  h.getConnections();
-			//Double originalEnergy = (Double) h.getComBus().getProperty("OriginalEnergy.value");
-			//Double originalEnergy = h.getInitialEnergy();
-			//int contactFreq = h.getContactFrequency();
-			
-			BigDecimal bd = new BigDecimal(getSimTime());
-			bd = bd.setScale(2, BigDecimal.ROUND_HALF_UP);
+			reported.add(h);
+		}
+		
+		int n = reported.size();
+		this.columnHosts = reported.toArray(new DTNHost[n]);
+		this.survivors = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			this.survivors[i] = 
+				this.columnHosts[i].getRole() == HostRole.SURVIVOR;
+		}
+		this.levels = new double[n];
+		
+		if (this.columnar) {
+			this.rowFormat = new DecimalFormat("0", 
+					DecimalFormatSymbols.getInstance(Locale.US));
+			this.rowFormat.setGroupingUsed(false);
+			this.rowFormat.setRoundingMode(RoundingMode.HALF_UP);
+			this.rowFormat.setMinimumFractionDigits(getPrecision());
+			this.rowFormat.setMaximumFractionDigits(getPrecision());
+			this.fieldPos = new FieldPosition(0);
+			this.row = new StringBuffer(16 * (n + 3));
 			
-			//if(h.toString().startsWith("n"))
-			write(bd +"   "+ h.toString() + " " +  format(value)+"  ");
+			this.row.append("time");
+			for (DTNHost h : this.columnHosts) {
+				this.row.append(',').append(h.toString());
+			}
+			this.row.append(",total,alive");
+			write(this.row.toString());
 		}
+	}
+	
+	/**
+	 * Creates a snapshot of energy levels 
+	 * @param hosts The list of hosts in the world
+	 */
+	private void createSnapshot(List<DTNHost> hosts) {
+		if (this.columnHosts == null) {
+			initColumns(hosts);
+		}
+		
+		EnergyEngine energy = EnergyEngine.getEngine();
+		double totEnergy = 0;
+		int deadNodesNum = 0;
+		for (int i = 0; i < this.columnHosts.length; i++) {
+			double value = energy.getEnergy(this.columnHosts[i]);
+			this.levels[i] = value;
+			if (Double.isNaN(value)) {
+				continue; /* not using an energy aware router */
+			}
+			if (this.survivors[i]) {
+				totEnergy += value;
+			}
+			if (value <= 0) {
+				deadNodesNum++;
+			}
+		}
+		int alive = this.survivorCount - deadNodesNum;
+		
 		BigDecimal bd = new BigDecimal(getSimTime());
-		bd = bd.setScale(2, BigDecimal.ROUND_HALF_UP);
-		write( bd + " Total Energy consumed: " +" "+totEnergy+" "  +(countOfSNs - deadNodesNum) + " ");
-		//write(deadNodesNum + " ");
+		String time = bd.setScale(2, BigDecimal.ROUND_HALF_UP).toString();
+		if (this.columnar) {
+			writeRow(time, totEnergy, alive);
+			return;
+		}
+		
+		for (int i = 0; i < this.columnHosts.length; i++) {
+			if (!Double.isNaN(this.levels[i])) {
+				write(time + "   " + this.columnHosts[i] + " " + 
+						format(this.levels[i]) + "  ");
+			}
+		}
+		write(time + " Total Energy consumed: " + " " + totEnergy + " " + 
+				alive + " ");
+	}
 	
+	/**
+	 * Writes the latest snapshot as a row of the columnar output
+	 * @param time The time stamp of the snapshot
+	 * @param totEnergy Total energy of the survivor nodes
+	 * @param alive Number of alive survivor nodes
+	 */
+	private void writeRow(String time, double totEnergy, int alive) {
+		this.row.setLength(0);
+		this.row.append(time);
+		for (double value : this.levels) {
+			this.row.append(',');
+			if (!Double.isNaN(value)) {
+				this.rowFormat.format(value, this.row, this.fieldPos);
+			}
+		}
+		this.row.append(',');
+		this.rowFormat.format(totEnergy, this.row, this.fieldPos);
+		this.row.append(',').append(alive);
+		write(this.row.toString());
 	}
 	
 }
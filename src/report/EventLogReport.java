@@ -37,10 +37,28 @@ public class EventLogReport extends Report
 	 */
 	private void processEvent(final String action, final DTNHost host1, 
 			final DTNHost host2, final Message message, final String extra) {
-		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
+		write(formatEvent(getSimTime(), action, 
+				(host1 != null ? host1.toString() : null),
+				(host2 != null ? host2.toString() : null),
+				(message != null ? message.toString() : null), extra));
+	}
+	
+	/**
+	 * Returns a log event as a line of the report
+	 * @param time Time of the event
+	 * @param action The action as a string
+	 * @param host1 Name of the first host (if any, or null)
+	 * @param host2 Name of the second host (if any, or null)
+	 * @param messageId ID of the message (if any, or null)
+	 * @param extra Extra info to append in the end of line (if any, or null)
+	 * @return The line
+	 */
+	static String formatEvent(double time, String action, String host1,
+			String host2, String messageId, String extra) {
+		return time + " " + action + " " + (host1 != null ? host1 : "")
 				+ (host2 != null ? (" " + host2) : "")
-				+ (message != null ? " " + message : "")
-				+ (extra != null ? " " + extra : ""));
+				+ (messageId != null ? " " + messageId : "")
+				+ (extra != null ? " " + extra : "");
 	}
 	
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
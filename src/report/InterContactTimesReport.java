@@ -15,13 +15,15 @@ public class InterContactTimesReport extends ContactTimesReport {
 	
 	@Override
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = this.removeConnection(host1, host2);
+		int entry = connections.getEntry(host1, host2);
 		
-		if (ci != null) { // connected again
+		if (entry >= 0 && !connections.isUp(entry) && 
+				!Double.isNaN(connections.getDownTime(entry))) {
+			// connected again
 			newEvent();
-			ci.connectionEnd();			
-			increaseTimeCount(ci.getConnectionTime());
-		}		
+			increaseTimeCount(getSimTime() - connections.getDownTime(entry));
+		}
+		connections.connected(host1, host2, getSimTime());
 	}
 	
 	@Override
@@ -30,6 +32,6 @@ public class InterContactTimesReport extends ContactTimesReport {
 			return;
 		}
 		// start counting time to next connection
-		this.addConnection(host1, host2);
+		connections.disconnected(host1, host2, getSimTime());
 	}
 }
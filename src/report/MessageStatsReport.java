@@ -4,14 +4,12 @@
  */
 package report;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.Settings;
+import core.SettingsError;
 
 /**
  * Report for generating different kind of total statistics about message
@@ -20,13 +18,32 @@ import core.MessageListener;
  * <P><strong>Note:</strong> if some statistics could not be created (e.g.
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
+ * <P>The latencies, hop counts, buffer times and round trip times are
+ * collected to constant memory {@link StreamingStats}, so the medians and
+ * percentiles are estimates within the relative accuracy
+ * {@link #ACCURACY_S} of the true values.
  */
 public class MessageStatsReport extends Report implements MessageListener {
-	private Map<String, Double> creationTimes;
-	private List<Double> latencies;
-	private List<Integer> hopCounts;
-	private List<Double> msgBufferTime;
-	private List<Double> rtt; // round trip times
+	/** Latency percentiles -setting id ({@value}). Comma separated list of
+	 * percentiles (e.g. <CODE>50, 90, 99</CODE>) of the latency to report
+	 * (as <CODE>latency_p50</CODE> etc.). Default = none. */
+	public static final String PERCENTILES_S = "percentiles";
+	/** Relative accuracy of the medians and percentiles -setting id
+	 * ({@value}). Default = {@link StreamingStats#DEF_ACCURACY}. */
+	public static final String ACCURACY_S = "accuracy";
+	/** Write the statistics -setting id ({@value}). Boolean. If true, the
+	 * statistics of the latencies etc. are also written as text that can be
+	 * parsed and merged with the statistics of other runs (see
+	 * {@link StreamingStats#parse(String)}). Default = false. */
+	public static final String WRITE_STATS_S = "writeStats";
+	
+	private StreamingStats latencies;
+	private StreamingStats hopCounts;
+	private StreamingStats msgBufferTime;
+	private StreamingStats rtt; // round trip times
+	private double[] percentiles;
+	private double accuracy;
+	private boolean writeStats;
 	
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -42,17 +59,38 @@ public class MessageStatsReport extends Report implements MessageListener {
 	 * Constructor.
 	 */
 	public MessageStatsReport() {
+		Settings s = getSettings();
+		this.percentiles = new double[0];
+		if (s.contains(PERCENTILES_S)) {
+			this.percentiles = s.getCsvDoubles(PERCENTILES_S);
+			for (double p : this.percentiles) {
+				if (p < 0 || p > 100) {
+					throw new SettingsError("Invalid percentile " + p + 
+							" for " + s.getFullPropertyName(PERCENTILES_S));
+				}
+			}
+		}
+		this.accuracy = StreamingStats.DEF_ACCURACY;
+		if (s.contains(ACCURACY_S)) {
+			this.accuracy = s.getDouble(ACCURACY_S);
+			if (this.accuracy <= 0 || this.accuracy >= 1) {
+				throw new SettingsError("Invalid value for " + 
+						s.getFullPropertyName(ACCURACY_S));
+			}
+		}
+		if (s.contains(WRITE_STATS_S)) {
+			this.writeStats = s.getBoolean(WRITE_STATS_S);
+		}
 		init();
 	}
 
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
-		this.latencies = new ArrayList<Double>();
-		this.msgBufferTime = new ArrayList<Double>();
-		this.hopCounts = new ArrayList<Integer>();
-		this.rtt = new ArrayList<Double>();
+		this.latencies = new StreamingStats(this.accuracy);
+		this.msgBufferTime = new StreamingStats(this.accuracy);
+		this.hopCounts = new StreamingStats(this.accuracy);
+		this.rtt = new StreamingStats(this.accuracy);
 		
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -99,8 +137,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 		this.nrofRelayed++;
 		if (finalTarget) {
-			this.latencies.add(getSimTime() - 
-				this.creationTimes.get(m.getId()) );
+			this.latencies.add(getSimTime() - m.getCreationTime());
 			this.nrofDelivered++;
 			this.hopCounts.add(m.getHops().size() - 1);
 			
@@ -118,7 +155,6 @@ public class MessageStatsReport extends Report implements MessageListener {
 			return;
 		}
 		
-		this.creationTimes.put(m.getId(), getSimTime());
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
@@ -165,19 +201,56 @@ public class MessageStatsReport extends Report implements MessageListener {
 			"\ndelivery_prob: " + format(deliveryProb) +
 			"\nresponse_prob: " + format(responseProb) + 
 			"\noverhead_ratio: " + format(overHead) + 
-			"\nlatency_avg: " + getAverage(this.latencies) +
-			"\nlatency_med: " + getMedian(this.latencies) + 
-			"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
+			"\nlatency_avg: " + format(this.latencies.getAverage()) +
+			"\nlatency_med: " + format(this.latencies.getMedian()) + 
+			"\nhopcount_avg: " + format(this.hopCounts.getAverage()) +
 			"\nhopcount_med: " + getIntMedian(this.hopCounts) + 
-			"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
-			"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
-			"\nrtt_avg: " + getAverage(this.rtt) +
-			"\nrtt_med: " + getMedian(this.rtt)
+			"\nbuffertime_avg: " + format(this.msgBufferTime.getAverage()) +
+			"\nbuffertime_med: " + format(this.msgBufferTime.getMedian()) +
+			"\nrtt_avg: " + format(this.rtt.getAverage()) +
+			"\nrtt_med: " + format(this.rtt.getMedian())
 			;
 		
-		write(statsText);
+		for (double p : this.percentiles) {
+			statsText += "\nlatency_p" + formatPercentile(p) + ": " + 
+				format(this.latencies.getQuantile(p / 100));
+		}
+		
+		if (this.writeStats) {
+			statsText += "\nlatency_stats: " + this.latencies.encode() +
+				"\nhopcount_stats: " + this.hopCounts.encode() +
+				"\nbuffertime_stats: " + this.msgBufferTime.encode() +
+				"\nrtt_stats: " + this.rtt.encode();
+		}
+		
+		write(statsText);
 		
 		super.done();
 	}
 	
+	/**
+	 * Returns the median of integer valued statistics
+	 * @param stats The statistics
+	 * @return The median rounded to an integer, or 0 if there are no values
+	 */
+	private int getIntMedian(StreamingStats stats) {
+		if (stats.getCount() == 0) {
+			return 0;
+		}
+		return (int)Math.round(stats.getMedian());
+	}
+	
+	/**
+	 * Returns a percentile as text for the name of its statistic
+	 * (e.g. "99" or "99.9")
+	 * @param p The percentile
+	 * @return The percentile as text
+	 */
+	private String formatPercentile(double p) {
+		if (p == Math.floor(p)) {
+			return String.valueOf((int)p);
+		}
+		return String.valueOf(p);
+	}
+	
 }
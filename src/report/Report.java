@@ -5,9 +5,14 @@
 package report;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -49,6 +54,11 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Asynchronous output -setting id ({@value}). Boolean. If true, the
+	 *  report's output is written to the file by a background thread (see
+	 *  {@link AsyncWriter}), so the simulation doesn't wait for the disk.
+	 *  Default is false. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
@@ -67,6 +77,7 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	private boolean asyncOutput;
 	
 	/**
 	 * Constructor.
@@ -79,11 +90,7 @@ public abstract class Report {
 		this.outputInterval = -1;
 		this.warmupIDs = null;
 
-		Settings settings = new Settings();
-		scenarioName = settings.valueFillString(settings.getSetting(
-				SimScenario.SCENARIO_NS + "." +	SimScenario.NAME_S));
-		
-		settings = getSettings();
+		Settings settings = getSettings();
 		
 		if (settings.contains(INTERVAL_SETTING)) {
 			outputInterval = settings.getDouble(INTERVAL_SETTING);
@@ -95,6 +102,10 @@ public abstract class Report {
 		else {
 			this.warmupTime = 0;
 		}
+		
+		if (settings.contains(ASYNC_OUTPUT_S)) {
+			this.asyncOutput = settings.getBoolean(ASYNC_OUTPUT_S);
+		}
 
 		
 		if (settings.contains(PRECISION_SETTING)) {
@@ -107,6 +118,19 @@ public abstract class Report {
 			precision = DEF_PRECISION;
 		}
 		
+		setOutputNames();
+	}
+	
+	/**
+	 * Sets the scenario name and the output file name from the (current)
+	 * settings, and makes sure the output directory exists
+	 */
+	private void setOutputNames() {
+		Settings settings = new Settings();
+		scenarioName = settings.valueFillString(settings.getSetting(
+				SimScenario.SCENARIO_NS + "." +	SimScenario.NAME_S));
+		
+		settings = getSettings();
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
 			// fill value place holders in the name
@@ -122,7 +146,7 @@ public abstract class Report {
 			outFileName = outDir + scenarioName + 
 				"_" + this.getClass().getSimpleName();
 			if (outputInterval == -1) {
-				outFileName += OUT_SUFFIX; // no intervalled reports
+				outFileName += getOutputSuffix(); // no intervalled reports
 			}
 			
 		}
@@ -130,6 +154,26 @@ public abstract class Report {
 		checkDirExistence(outFileName);
 	}
 
+	/**
+	 * Returns the suffix of the report's file name when the name is
+	 * constructed from the scenario and report class' names. This version
+	 * returns {@link #OUT_SUFFIX}; reports that don't write text may use
+	 * another suffix.
+	 * @return The suffix of the output file name
+	 */
+	protected String getOutputSuffix() {
+		return OUT_SUFFIX;
+	}
+	
+	/**
+	 * Returns the name of the report's output file (without the interval
+	 * suffix of intervalled reports)
+	 * @return The name of the output file
+	 */
+	protected String getOutputFileName() {
+		return this.outFileName;
+	}
+	
 	/**
 	 * Checks that a directory for a file exists or creates the directory
 	 * if it didn't exist.
@@ -192,7 +236,12 @@ public abstract class Report {
 	 */
 	private void createOutput(String outFileName) {
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			Writer writer = new FileWriter(outFileName);
+			if (this.asyncOutput) {
+				writer = new AsyncWriter(writer, 
+						new File(outFileName).getName());
+			}
+			this.out = new PrintWriter(writer);
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName + 
 					"' for report output\n" + e.getMessage(), e);
@@ -249,6 +298,15 @@ public abstract class Report {
 		return String.format("%." + precision + "f", value);
 	}
 	
+	/**
+	 * Returns the number of decimals of formatted double values (see
+	 * {@link #PRECISION_SETTING})
+	 * @return The precision
+	 */
+	protected int getPrecision() {
+		return this.precision;
+	}
+	
 	/**
 	 * Sets a prefix that will be inserted before every line in the report
 	 * @param txt Text to use as the prefix
@@ -325,6 +383,116 @@ public abstract class Report {
 		return s;
 	}
 	
+	/**
+	 * Writes a complete snapshot of the report, as if the simulation ended
+	 * now, for an end time horizon of a multi-horizon run (see
+	 * {@link SimScenario#MULTI_HORIZON_S}). The snapshot is written to the
+	 * files the report would have with the current settings, i.e., the
+	 * caller overrides the end time setting for the snapshot (see
+	 * {@link #writeSnapshot(String, String)}). Nothing is written if the
+	 * files would be the same as the report's own files.
+	 */
+	public void horizonDone() {
+		String ownScenarioName = this.scenarioName;
+		String ownFileName = this.outFileName;
+		setOutputNames();
+		String horizonScenarioName = this.scenarioName;
+		String horizonFileName = this.outFileName;
+		
+		this.scenarioName = ownScenarioName;
+		this.outFileName = ownFileName;
+		if (horizonFileName.equals(ownFileName)) {
+			return;
+		}
+		
+		writeSnapshot(horizonFileName, horizonScenarioName);
+	}
+	
+	/**
+	 * Writes a snapshot of the report for {@link #horizonDone()}. The
+	 * output written so far is copied to the snapshot's files and
+	 * {@link #done()} is called with {@link #out} writing to the copy, after
+	 * which the report continues normally. Reports whose {@link #done()}
+	 * changes their state, or that don't write through {@link #out}, should
+	 * override this method.
+	 * @param horizonFileName Name of the snapshot's output file
+	 * @param horizonScenarioName Scenario name of the snapshot
+	 */
+	protected void writeSnapshot(String horizonFileName, 
+			String horizonScenarioName) {
+		String ownScenarioName = this.scenarioName;
+		String ownFileName = this.outFileName;
+		if (this.out == null) {
+			init(); // same as done() writing its first line
+		}
+		PrintWriter ownOut = this.out;
+		ownOut.flush();
+		
+		String snapshotFile = horizonFileName;
+		if (this.outputInterval > 0) {
+			/* copy all the files of the earlier intervals as they are */
+			for (int i = 0; i < this.lastOutputSuffix; i++) {
+				String suffix = String.format(INTERVALLED_FORMAT, i);
+				copyFile(ownFileName + suffix, horizonFileName + suffix);
+			}
+			snapshotFile += String.format(INTERVALLED_FORMAT, 
+					this.lastOutputSuffix - 1);
+		}
+		else {
+			copyFile(ownFileName, horizonFileName);
+		}
+		
+		try {
+			this.out = new PrintWriter(new FileWriter(snapshotFile, true));
+		} catch (IOException e) {
+			throw new SimError("Couldn't open file '" + snapshotFile + 
+					"' for report output\n" + e.getMessage(), e);
+		}
+		
+		this.scenarioName = horizonScenarioName;
+		try {
+			done();
+		}
+		finally {
+			this.out = ownOut;
+			this.scenarioName = ownScenarioName;
+		}
+	}
+	
+	/**
+	 * Copies the contents of a file to another file
+	 * @param from Name of the file to copy
+	 * @param to Name of the file to create (or replace)
+	 */
+	protected void copyFile(String from, String to) {
+		InputStream in = null;
+		OutputStream os = null;
+		try {
+			in = new FileInputStream(from);
+			os = new FileOutputStream(to);
+			byte[] buffer = new byte[64 * 1024];
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				os.write(buffer, 0, len);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't copy report output '" + from + 
+					"' to '" + to + "'\n" + e.getMessage(), e);
+		} finally {
+			try {
+				if (in != null) {
+					in.close();
+				}
+				if (os != null) {
+					os.close();
+				}
+			} catch (IOException e) {
+				throw new SimError("Couldn't close report output '" + to + 
+						"'\n" + e.getMessage(), e);
+			}
+		}
+	}
+	
 	/**
 	 * Called when the simulation is done, user requested
 	 * premature termination or intervalled report generating decided
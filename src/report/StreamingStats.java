@@ -0,0 +1,320 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/**
+ * Constant memory statistics of a stream of values. The average is the
+ * plain sum divided by the count (so it equals the average of the values
+ * in a list), the variance is tracked with Welford's algorithm, and the
+ * quantiles (e.g. the median) come from a histogram with logarithmic
+ * buckets: a quantile is within the relative accuracy given in the
+ * constructor from the true value, and always within the smallest and
+ * largest value. The histogram has at most {@link #MAX_BINS} buckets; if the
+ * values span a wider range, the smallest buckets are merged, which only
+ * affects the accuracy of the lowest quantiles.
+ * <P>
+ * Statistics with the same accuracy can be merged (e.g., ones of parallel
+ * runs or intervals), and the statistics can be written to and parsed from
+ * a single line of text (see {@link #encode()} and {@link #parse(String)}).
+ * The histogram is meant for non-negative values; negative values are
+ * counted as zeros in the quantiles.
+ * </P>
+ */
+public class StreamingStats {
+	/** Default relative accuracy of the quantiles */
+	public static final double DEF_ACCURACY = 0.001;
+	/** Maximum number of histogram buckets */
+	public static final int MAX_BINS = 8192;
+	/** Values smaller than this are counted as zeros in the quantiles */
+	private static final double MIN_INDEXED_VALUE = 1e-9;
+
+	private final double accuracy;
+	private final double gamma;
+	private final double logGamma;
+
+	private long count;
+	private double sum;
+	/** Welford's running mean and sum of squared differences */
+	private double mean;
+	private double m2;
+	private double min;
+	private double max;
+
+	/** number of zero (or negative) values */
+	private long zeroCount;
+	/** counts of the values in the buckets offset...offset+bins.length-1
+	 * (or null if there are none) */
+	private long[] bins;
+	private int offset;
+
+	/**
+	 * Creates statistics with the default accuracy
+	 */
+	public StreamingStats() {
+		this(DEF_ACCURACY);
+	}
+
+	/**
+	 * Creates statistics with the given accuracy of the quantiles
+	 * @param accuracy Relative accuracy (0 < accuracy < 1)
+	 */
+	public StreamingStats(double accuracy) {
+		if (accuracy <= 0 || accuracy >= 1) {
+			throw new IllegalArgumentException("Invalid accuracy " + accuracy);
+		}
+		this.accuracy = accuracy;
+		this.gamma = (1 + accuracy) / (1 - accuracy);
+		this.logGamma = Math.log(this.gamma);
+		this.min = Double.NaN;
+		this.max = Double.NaN;
+	}
+
+	/**
+	 * Adds a value to the statistics
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		this.count++;
+		this.sum += value;
+		double delta = value - this.mean;
+		this.mean += delta / this.count;
+		this.m2 += delta * (value - this.mean);
+		if (this.count == 1 || value < this.min) {
+			this.min = value;
+		}
+		if (this.count == 1 || value > this.max) {
+			this.max = value;
+		}
+
+		if (value < MIN_INDEXED_VALUE) {
+			this.zeroCount++;
+		}
+		else {
+			addToBin((int)Math.ceil(Math.log(value) / this.logGamma), 1);
+		}
+	}
+
+	/**
+	 * Adds a count to a histogram bucket, growing the histogram if needed
+	 */
+	private void addToBin(int index, long n) {
+		if (this.bins == null) {
+			this.bins = new long[16];
+			this.offset = index - 8;
+		}
+		else if (index < this.offset ||
+				index >= this.offset + this.bins.length) {
+			grow(index);
+		}
+
+		if (index < this.offset) { /* below the merged buckets */
+			index = this.offset;
+		}
+		this.bins[index - this.offset] += n;
+	}
+
+	/**
+	 * Grows the histogram to cover the index. If the histogram would exceed
+	 * {@link #MAX_BINS} buckets, the lowest buckets are merged.
+	 */
+	private void grow(int index) {
+		int lo = Math.min(this.offset, index);
+		int hi = Math.max(this.offset + this.bins.length - 1, index);
+		int size = Math.min(MAX_BINS,
+				Math.max(hi - lo + 1, 2 * this.bins.length));
+		/* leave the extra room to the side the histogram grows to */
+		int newOffset = index < this.offset ? hi - size + 1 : lo;
+		if (hi - newOffset + 1 > size) {
+			newOffset = hi - size + 1;
+		}
+
+		long[] newBins = new long[size];
+		for (int i = 0; i < this.bins.length; i++) {
+			int j = this.offset + i - newOffset;
+			newBins[Math.max(j, 0)] += this.bins[i];
+		}
+		this.bins = newBins;
+		this.offset = newOffset;
+	}
+
+	/**
+	 * Merges other statistics to these statistics
+	 * @param other The statistics to merge
+	 * @throws IllegalArgumentException if the statistics have different
+	 * accuracies
+	 */
+	public void merge(StreamingStats other) {
+		if (other.accuracy != this.accuracy) {
+			throw new IllegalArgumentException("Can't merge statistics of " +
+					"accuracy " + other.accuracy + " to " + this.accuracy);
+		}
+		if (other.count == 0) {
+			return;
+		}
+		if (this.count == 0 || other.min < this.min) {
+			this.min = other.min;
+		}
+		if (this.count == 0 || other.max > this.max) {
+			this.max = other.max;
+		}
+
+		long n = this.count + other.count;
+		double delta = other.mean - this.mean;
+		this.m2 += other.m2 + delta * delta * this.count * other.count / n;
+		this.mean += delta * other.count / n;
+		this.count = n;
+		this.sum += other.sum;
+
+		this.zeroCount += other.zeroCount;
+		if (other.bins != null) {
+			for (int i = 0; i < other.bins.length; i++) {
+				if (other.bins[i] > 0) {
+					addToBin(other.offset + i, other.bins[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of values
+	 * @return The number of values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sum of the values
+	 * @return The sum of the values
+	 */
+	public double getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Returns the average of the values
+	 * @return The average or NaN if there are no values
+	 */
+	public double getAverage() {
+		return this.count == 0 ? Double.NaN : this.sum / this.count;
+	}
+
+	/**
+	 * Returns the (population) variance of the values
+	 * @return The variance or NaN if there are no values
+	 */
+	public double getVariance() {
+		return this.count == 0 ? Double.NaN : this.m2 / this.count;
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return The smallest value or NaN if there are no values
+	 */
+	public double getMin() {
+		return this.min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return The largest value or NaN if there are no values
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Returns the median of the values (see {@link #getQuantile(double)})
+	 * @return The median or NaN if there are no values
+	 */
+	public double getMedian() {
+		return getQuantile(0.5);
+	}
+
+	/**
+	 * Returns (an estimate of) a quantile of the values. Like
+	 * {@link Report#getMedian(java.util.List)}, the quantile is the value at
+	 * index <CODE>(int)(q * count)</CODE> of the sorted values.
+	 * @param q The quantile (0 <= q <= 1, e.g. 0.99 for the 99th percentile)
+	 * @return The quantile or NaN if there are no values
+	 */
+	public double getQuantile(double q) {
+		if (this.count == 0) {
+			return Double.NaN;
+		}
+		long rank = Math.min((long)(q * this.count), this.count - 1);
+
+		double value = 0;
+		long seen = this.zeroCount;
+		if (rank >= seen) {
+			for (int i = 0; i < this.bins.length; i++) {
+				seen += this.bins[i];
+				if (seen > rank) {
+					value = 2 * Math.pow(this.gamma, this.offset + i) /
+						(this.gamma + 1);
+					break;
+				}
+			}
+		}
+		return Math.max(this.min, Math.min(this.max, value));
+	}
+
+	/**
+	 * Returns the statistics as a single line of text that can be parsed
+	 * with {@link #parse(String)}
+	 * @return The statistics as text
+	 */
+	public String encode() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(this.accuracy).append(' ').append(this.count).append(' ');
+		sb.append(this.sum).append(' ').append(this.mean).append(' ');
+		sb.append(this.m2).append(' ').append(this.min).append(' ');
+		sb.append(this.max).append(' ').append(this.zeroCount);
+		if (this.bins != null) {
+			/* non-empty buckets as index:count pairs */
+			char delim = ' ';
+			for (int i = 0; i < this.bins.length; i++) {
+				if (this.bins[i] > 0) {
+					sb.append(delim).append(this.offset + i).append(':');
+					sb.append(this.bins[i]);
+					delim = ',';
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parses statistics written with {@link #encode()}
+	 * @param text The text to parse
+	 * @return The statistics
+	 * @throws IllegalArgumentException if the text is not valid
+	 */
+	public static StreamingStats parse(String text) {
+		try {
+			String[] parts = text.trim().split(" ");
+			StreamingStats s = new StreamingStats(
+					Double.parseDouble(parts[0]));
+			s.count = Long.parseLong(parts[1]);
+			s.sum = Double.parseDouble(parts[2]);
+			s.mean = Double.parseDouble(parts[3]);
+			s.m2 = Double.parseDouble(parts[4]);
+			s.min = Double.parseDouble(parts[5]);
+			s.max = Double.parseDouble(parts[6]);
+			s.zeroCount = Long.parseLong(parts[7]);
+			if (parts.length > 8) {
+				for (String bin : parts[8].split(",")) {
+					int i = bin.indexOf(':');
+					s.addToBin(Integer.parseInt(bin.substring(0, i)),
+							Long.parseLong(bin.substring(i + 1)));
+				}
+			}
+			return s;
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid statistics '" +
+					text + "'", e);
+		}
+	}
+}
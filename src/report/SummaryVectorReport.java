@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import routing.ActiveRouter;
+import routing.SummaryVector;
+
+/**
+ * Reports the size and the expected false positive rate of the summary
+ * vectors the routers exchanged, and how many transfers the vectors saved
+ * (see {@link ActiveRouter#SUMMARY_VECTORS_S}). The false positive rate is
+ * the rate a vector was expected to have with the IDs it contained; a false
+ * positive makes the router skip a message the other end didn't have.
+ */
+public class SummaryVectorReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public SummaryVectorReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		write("Summary vector stats for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+
+		int nrofVectors = SummaryVector.getNrofVectors();
+		double bitsAvg = Double.NaN;
+		double entriesAvg = Double.NaN;
+		double fpRateAvg = Double.NaN;
+		if (nrofVectors > 0) {
+			bitsAvg = (double)SummaryVector.getTotalBits() / nrofVectors;
+			entriesAvg = (double)SummaryVector.getTotalEntries() / nrofVectors;
+			fpRateAvg = SummaryVector.getTotalFalsePositiveRate() / nrofVectors;
+		}
+
+		String statsText = "vectors: " + nrofVectors +
+			"\nsize_bits_avg: " + format(bitsAvg) +
+			"\nsize_bytes_avg: " + format(bitsAvg / 8) +
+			"\nentries_avg: " + format(entriesAvg) +
+			"\nfp_rate_avg: " + format(fpRateAvg) +
+			"\nskipped_transfers: " + SummaryVector.getNrofSkipped()
+			;
+
+		write(statsText);
+
+		super.done();
+	}
+
+}
@@ -7,7 +7,7 @@ package report;
 import java.util.List;
 
 import core.DTNHost;
-import core.UpdateListener;
+import core.SamplingUpdateListener;
 
 /**
  * Report for total amount of contact times among hosts. Reports how long all
@@ -18,7 +18,7 @@ import core.UpdateListener;
  * warmup period are ignored.
  */
 public class TotalContactTimeReport extends ContactTimesReport implements
-		UpdateListener {
+		SamplingUpdateListener {
 	
 	/** The header of every report file */
 	public static final String HEADER = "# time totalContactTime";
@@ -40,13 +40,13 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
+		double time = removeConnection(host1, host2);
 		
-		if (ci == null) {
+		if (time < 0) {
 			return; // connection started during the warm up period
 		}
 		
-		oldContactTimes += ci.getConnectionTime();		
+		oldContactTimes += time;		
 	}
 
 	/**
@@ -62,10 +62,7 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 		lastWrite = simTime;
 		
 		// count also the times for connections that are still up
-		double othersTime = 0;
-		for (ConnectionInfo oth : this.connections.values()) {
-			othersTime += oth.getConnectionTime();
-		}
+		double othersTime = this.connections.getOpenContactTime(simTime);
 		
 		double totalTime = oldContactTimes + othersTime;
 		
@@ -76,4 +73,11 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 		write(format(simTime) + " " + format(totalTime));
 		lastReportedTime = totalTime;
 	}
+	
+	/**
+	 * Returns the time when the next total contact time is reported
+	 */
+	public double getNextSampleTime() {
+		return Math.max(lastWrite + granularity, warmupTime);
+	}
 }
@@ -0,0 +1,82 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package report;
+
+import java.util.List;
+
+import core.DTNHost;
+import core.SimScenario;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Reports the wall clock time that the simulator spends on the world updates,
+ * i.e., the cost of moving, connecting and updating the routers of all hosts
+ * on one update interval. Useful for comparing the performance of routers and
+ * optimizations: run the same scenario (e.g., benchmark_settings.txt) before
+ * and after a change and compare the reports. The duration of every update
+ * is measured by the world itself (see {@link World#getUpdateDuration()}),
+ * so the setup of the simulation and the time spent in the update listeners
+ * and the UI between the updates are not included. Times are in
+ * microseconds. Updates during the warm up period are not included.
+ * For the cost of the single operations of the routers, see
+ * {@link routing.RouterBenchmark}.
+ */
+public class UpdateTimeReport extends Report implements UpdateListener {
+	private World world;
+	/** Durations of the updates (microseconds) */
+	private StreamingStats updateTimes;
+	private int nrofHosts;
+
+	/**
+	 * Constructor.
+	 */
+	public UpdateTimeReport() {
+		this.world = SimScenario.getInstance().getWorld();
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.updateTimes = new StreamingStats();
+		this.nrofHosts = 0;
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		this.nrofHosts = hosts.size();
+		if (isWarmup()) {
+			return;
+		}
+		this.updateTimes.add(this.world.getUpdateDuration() / 1000.0);
+	}
+
+	@Override
+	public void done() {
+		write("Update times for scenario " + getScenarioName() + 
+				"\nsim_time: " + format(getSimTime()));
+
+		long nrofUpdates = this.updateTimes.getCount();
+		double perHost = Double.NaN;
+		if (nrofUpdates > 0 && this.nrofHosts > 0) {
+			perHost = this.updateTimes.getAverage() / this.nrofHosts;
+		}
+
+		String statsText = "updates: " + nrofUpdates +
+			"\nhosts: " + this.nrofHosts +
+			"\ntotal_s: " + format(this.updateTimes.getSum() / 1000000) +
+			"\nupdate_avg: " + format(this.updateTimes.getAverage()) +
+			"\nupdate_med: " + format(this.updateTimes.getMedian()) +
+			"\nupdate_99p: " + format(this.updateTimes.getQuantile(0.99)) +
+			"\nupdate_max: " + format(this.updateTimes.getMax()) +
+			"\nhost_update_avg: " + format(perHost)
+			;
+
+		write(statsText);
+
+		super.done();
+	}
+
+}
@@ -7,18 +7,19 @@ package routing;
 import input.NeighborListReader;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
+import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
+import core.HostRole;
 import core.Message;
 import core.MessageListener;
 import core.ModuleCommunicationBus;
-import core.ModuleCommunicationListener;
-import core.NetworkInterface;
+import core.ModuleCommunicationDoubleListener;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -30,7 +31,7 @@ import core.Tuple;
  * {@link #getOldestMessage(boolean)}) and watching of sending connections (see
  * {@link #update()}).
  */
-public abstract class ActiveRouter extends MessageRouter implements ModuleCommunicationListener {
+public abstract class ActiveRouter extends MessageRouter implements ModuleCommunicationDoubleListener {
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -38,6 +39,23 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Exchange summary vectors -setting id ({@value}). Boolean valued.
+	 * If set to true, the router asks for a summary vector (see
+	 * {@link SummaryVector}) of the other end's messages whenever a
+	 * connection comes up, and doesn't offer the messages that are in the
+	 * vector, or that the other end has accepted or rejected as old during
+	 * the contact, over that connection. Default=false. */
+	public static final String SUMMARY_VECTORS_S = "summaryVectors";
+	/** False positive rate of the summary vectors -setting id ({@value}).
+	 * Default={@value #DEF_SUMMARY_FP_RATE}. */
+	public static final String SUMMARY_FP_RATE_S = "summaryVectorFpRate";
+	/** Default false positive rate of the summary vectors */
+	public static final double DEF_SUMMARY_FP_RATE = 0.01;
+	/** should the summary vectors be exchanged */
+	private boolean summaryVectors;
+	private double summaryFpRate;
+	/** summary vectors of the other ends of the connections (if exchanged) */
+	private HashMap<Connection, SummaryVector> peerSummaries;
 	
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
@@ -65,6 +83,10 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of 
 	 * energy left" variable. Value type: double */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
+	/** {@link ModuleCommunicationBus} slot of the {@link #ENERGY_VALUE_ID}
+	 * variable */
+	public static final int ENERGY_VALUE_SLOT =
+		ModuleCommunicationBus.getSlot(ENERGY_VALUE_ID);
 	public static final String IS_ENERGY_CONSTRAINED = "isEnergyConstrained";
 	
 	private final double[] initEnergy;
@@ -73,8 +95,6 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
-	private double lastScanUpdate;
-	private double lastUpdate;
 	private double scanInterval;	
 	private int isEnergyConstrained = 2;
 	private ModuleCommunicationBus comBus;
@@ -103,6 +123,18 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 			this.deleteDelivered = false;
 		}
 		
+		if (s.contains(SUMMARY_VECTORS_S)) {
+			this.summaryVectors = s.getBoolean(SUMMARY_VECTORS_S);
+		}
+		this.summaryFpRate = DEF_SUMMARY_FP_RATE;
+		if (s.contains(SUMMARY_FP_RATE_S)) {
+			this.summaryFpRate = s.getDouble(SUMMARY_FP_RATE_S);
+			if (this.summaryFpRate <= 0 || this.summaryFpRate >= 1) {
+				throw new SettingsError("Invalid value for " + 
+						s.getFullPropertyName(SUMMARY_FP_RATE_S));
+			}
+		}
+		
 		this.initEnergy = s.getCsvDoubles(INIT_ENERGY_S);
 		
 		if (this.initEnergy.length != 1 && this.initEnergy.length != 2) {
@@ -131,7 +163,7 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		
 		if(s.contains("neighborListFile")){
 			String filePath = s.getSetting("neighborListFile");
-			reader = new NeighborListReader(filePath);
+			reader = NeighborListReader.getReader(filePath);
 		}
 		
 	}
@@ -162,6 +194,8 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.summaryVectors = r.summaryVectors;
+		this.summaryFpRate = r.summaryFpRate;
 		this.initEnergy = r.initEnergy;
 		setEnergy(this.initEnergy);
 		this.scanEnergy = r.scanEnergy;
@@ -169,8 +203,6 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
 		this.comBus = null;
-		this.lastScanUpdate = r.lastScanUpdate;
-		this.lastUpdate = r.lastUpdate;
 		this.isEnergyConstrained = r.isEnergyConstrained;
 
 		this.initTime = r.initTime;
@@ -190,60 +222,55 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 			return;
 		}
 		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		}
 	}
 	
 	/**
-	 * Reduces the energy reserve for the amount that is used by sending data
-	 * and scanning for the other nodes. 
+	 * Reduces the energy reserve for the amount that is used by sending and
+	 * receiving data and scanning for the other nodes (see
+	 * {@link EnergyEngine}). Only the survivor nodes (named with prefix
+	 * <CODE>n</CODE>) with an id bigger than the last command center's id
+	 * consume energy. 
 	 */
 	protected void reduceSendingAndScanningEnergy() {
-		double simTime = SimClock.getTime();
 		if(this.isEnergyConstrained == 2){
+			EnergyEngine energy = EnergyEngine.getEngine();
+			int address = getHost().getAddress();
 			if (this.comBus == null) {
 				this.comBus = getHost().getComBus();
 				this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
 				this.comBus.subscribe(ENERGY_VALUE_ID, this);
+				
+				int mode = EnergyEngine.DRAIN_RECEIVING | 
+					EnergyEngine.DRAIN_SCANNING;
+				if (getHost().getRole() == HostRole.SURVIVOR &&
+						getHost().getNameId() > lastCCID) {
+					mode |= EnergyEngine.CONSUMES;
+				}
+				energy.register(getHost(), this.scanEnergy, this.transmitEnergy,
+						this.scanInterval, this.warmupTime, mode);
 			}
 			
-			if (this.currentEnergy <= 0) {
-				/* turn radio off */
-				this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
+			if (energy.turnOffIfDepleted(address)) {
 				return; /* no more energy to start new transfers */
 			}
 			
-			int currentHostId = Integer.parseInt(getHost().toString().substring(1));
-			
 			//Address failed nodes
 			if (failedNodeList!= null && failedNodeList.contains(getHost().toString())){
 //				System.out.println("Here: Failed Node List: " + failedNodeList);
-				this.comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+				this.comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 			}
 			
-			//Transmission energy
-			if (getHost().toString().startsWith("n") && currentHostId > lastCCID 
-					&& simTime > this.lastUpdate && sendingConnections.size() > 0) {
-				// System.out.println("Node: " + getHost()+" Sending " + sendingConnections);
-				reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
+			if (energy.isBatched()) {
+				energy.setActivity(address, sendingConnections.size() > 0,
+						isReceiving() > 0);
 			}
-			
-			//Receiving energy
-			 if (getHost().toString().startsWith("n") && currentHostId > lastCCID 
-					 && simTime > this.lastUpdate && isReceiving() > 0) {
-         		//System.out.println("Node: " + getHost()+" Receiving " + sendingConnections);
-                	reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
-			 }
-			this.lastUpdate = simTime;
-		
-			//Scanning energy
-			if (getHost().toString().startsWith("n") && currentHostId > lastCCID 
-					&& simTime > this.lastScanUpdate + this.scanInterval) {
-				/* scanning at this update round */
-				reduceEnergy(this.scanEnergy);
-				this.lastScanUpdate = simTime;
+			else {
+				energy.drain(address, sendingConnections.size() > 0,
+						isReceiving() > 0);
 			}
 		}
 	}
@@ -280,14 +307,41 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		if (this.summaryVectors) {
+			this.peerSummaries = new HashMap<Connection, SummaryVector>();
+		}
 	}
 	
 	/**
-	 * Called when a connection's state changes. This version doesn't do 
-	 * anything but subclasses may want to override this.
+	 * Called when a connection's state changes. This version only exchanges
+	 * the summary vectors (if enabled) but subclasses may want to override
+	 * this. Overriding methods must call {@link #updatePeerSummary(Connection)}
+	 * (or this method) for the summary vectors to work.
 	 */
 	@Override
-	public void changedConnection(Connection con) { }
+	public void changedConnection(Connection con) {
+		updatePeerSummary(con);
+	}
+	
+	/**
+	 * Gets the summary vector of the other end of a connection that came up,
+	 * or forgets it when the connection went down. Does nothing if summary
+	 * vectors are not exchanged (see {@link #SUMMARY_VECTORS_S}).
+	 * @param con The connection whose state changed
+	 */
+	protected void updatePeerSummary(Connection con) {
+		if (this.peerSummaries == null) {
+			return;
+		}
+		if (con.isUp()) {
+			MessageRouter other = con.getOtherNode(getHost()).getRouter();
+			this.peerSummaries.put(con,
+					other.createSummaryVector(this.summaryFpRate));
+		}
+		else {
+			this.peerSummaries.remove(con);
+		}
+	}
 	
 	@Override
 	public boolean requestDeliverableMessages(Connection con) {
@@ -296,6 +350,11 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		}
 		
 		DTNHost other = con.getOtherNode(getHost());
+		if (!isSinkId(other.getNameId())) {
+			/* the sink range is the same for all messages, so a host outside
+			 * it can't take any of them */
+			return false;
+		}
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
 		ArrayList<Message> temp = 
@@ -375,7 +434,25 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 			return TRY_LATER_BUSY;
 		}
 		
+		SummaryVector sv = null;
+		if (this.peerSummaries != null &&
+				!isValidSink(m, con.getOtherNode(this.getHost()))) {
+			/* offers to the final recipient are never skipped, the denial is
+			 * what deletes delivered messages from the buffer */
+			sv = this.peerSummaries.get(con);
+			if (sv != null && sv.mightContain(m.getIdIndex())) {
+				/* the other end (most likely) has the message already */
+				SummaryVector.recordSkipped();
+				return DENIED_OLD;
+			}
+		}
+		
 		retVal = con.startTransfer(getHost(), m);
+		if (sv != null && (retVal == RCV_OK || retVal == DENIED_OLD)) {
+			/* the other end has (or gets) the message; don't offer it again
+			 * during this contact */
+			sv.addKnown(m.getIdIndex());
+		}
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
 		}
@@ -423,7 +500,7 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 	
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ){
+		if ( hasMessage(m) || isDeliveredMessage(m) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
@@ -507,23 +584,16 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-			
+		/* messages are indexed in receive time order -> first one that 
+		   isn't being sent is the oldest */
+		for (Message m : this.getMessagesByAge()) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-			
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 		
-		return oldest;
+		return null;
 	}
 	
 	/**
@@ -539,12 +609,10 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+		for (Connection con : getConnections()) {
+			DTNHost to = con.getOtherNode(getHost());
+			for (Message m : getMessagesFor(to)) {
+				forTuples.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
 		
@@ -645,8 +713,8 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * connections this node has. Messages are ordered by the sending
+	 * queue ({@link MessageRouter#getSendQueue()}). See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -657,11 +725,7 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getSendQueue(), connections);
 	}
 		
 	/**
@@ -772,10 +836,7 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		host = getHost();
 		otherHost = con.getOtherNode(getHost());
 		
-		String sOtherHost;
-		sOtherHost = otherHost.toString(); 
-		
-		if(host.getNeighborList()!= null && host.getNeighborList().contains(sOtherHost)){
+		if(host.isNeighbor(otherHost)){
 				//|| (otherHost.getNeighborList()!= null && otherHost.getNeighborList().contains(host.toString()))){
 			canMsgBeSent = true;
 		}
@@ -856,6 +917,24 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		 }	
 	}
 	
+	/**
+	 * Returns the next time when {@link #update()} has something to do by
+	 * itself, i.e., a transfer of a sending connection is done or it is time
+	 * for the next TTL check.
+	 * @return The time of the next transfer or TTL check event
+	 * @see MessageRouter#getNextUpdateTime()
+	 */
+	protected double getNextTransferEventTime() {
+		double next = this.lastTtlCheck + TTL_CHECK_INTERVAL;
+		for (Connection con : this.sendingConnections) {
+			if (!(con instanceof CBRConnection)) {
+				return SimClock.getTime(); /* can't tell when it's done */
+			}
+			next = Math.min(next, ((CBRConnection)con).getTransferDoneTime());
+		}
+		return next;
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -881,4 +960,15 @@ public abstract class ActiveRouter extends MessageRouter implements ModuleCommun
 		this.currentEnergy = (Double)newValue;
 	}
 	
+	/**
+	 * Called by the combus is the energy value is changed. Subclasses that
+	 * override {@link #moduleValueChanged(String, Object)} should also
+	 * override this.
+	 * @param key The energy ID
+	 * @param newValue The new energy value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		this.currentEnergy = newValue;
+	}
+	
 }
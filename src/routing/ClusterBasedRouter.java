@@ -16,10 +16,10 @@ import routing.clusterBasedRouting.ExemplarTableParams;
 import routing.clusterBasedRouting.NodeInformation;
 import core.Connection;
 import core.DTNHost;
+import core.HostRole;
 import core.Message;
 import core.ModuleCommunicationBus;
 import core.ModuleCommunicationListener;
-import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -70,8 +70,6 @@ public class ClusterBasedRouter extends ActiveRouter
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
-	private double lastScanUpdate;
-	private double lastUpdate;
 	private double scanInterval;	
 	private ModuleCommunicationBus comBus;
 	private static Random rng = null;
@@ -213,8 +211,6 @@ public class ClusterBasedRouter extends ActiveRouter
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
 		this.comBus = null;
-		this.lastScanUpdate = r.lastScanUpdate;
-		this.lastUpdate = r.lastUpdate;
 		this.isEnergyConstrained = r.isEnergyConstrained;
 		this.slotTimeInterval = r.slotTimeInterval;
 		this.nodeInf = new NodeInformation(this.getHost());
@@ -251,9 +247,9 @@ public class ClusterBasedRouter extends ActiveRouter
 			return;
 		}
 		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		}
 	}
 	
@@ -262,49 +258,44 @@ public class ClusterBasedRouter extends ActiveRouter
 	 * and scanning for the other nodes. 
 	 */
 	protected void reduceSendingAndScanningEnergy() {
-		double simTime = SimClock.getTime();
-		
 		if(this.isEnergyConstrained == 2){
-			
+			EnergyEngine energy = EnergyEngine.getEngine();
+			int address = getHost().getAddress();
 			if (this.comBus == null) {
 				this.comBus = getHost().getComBus();
 			}
 			
-			if (this.comBus.getProperty(ENERGY_VALUE_ID)== null) {
+			if (this.comBus.getProperty(ENERGY_VALUE_ID) == null) {
 				this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
 				this.comBus.subscribe(ENERGY_VALUE_ID, this);
 			}
-			
-			if(this.comBus.getProperty(PREVIOUS_ENERGY_VALUE)==null){
+			if (this.comBus.getProperty(PREVIOUS_ENERGY_VALUE) == null) {
 				this.comBus.addProperty(PREVIOUS_ENERGY_VALUE, this.previousEnergy);
 				this.comBus.subscribe(PREVIOUS_ENERGY_VALUE, this);
 			}
-			
-			if(this.comBus.getProperty(TOTAL_ENERGY_VALUE)==null){
+			if (this.comBus.getProperty(TOTAL_ENERGY_VALUE) == null) {
 				this.comBus.addProperty(TOTAL_ENERGY_VALUE, this.totalEnergy);
 				this.comBus.subscribe(TOTAL_ENERGY_VALUE, this);
 			}
 			
-			if (this.currentEnergy <= 0) {
-				/* turn radio off */
-				this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
-				return; /* no more energy to start new transfers */
+			if (!energy.isRegistered(address)) {
+				int mode = EnergyEngine.DRAIN_SCANNING;
+				if (getHost().getRole() == HostRole.SURVIVOR) {
+					mode |= EnergyEngine.CONSUMES;
+				}
+				energy.register(getHost(), this.scanEnergy, this.transmitEnergy,
+						this.scanInterval, this.warmupTime, mode);
 			}
 			
-			//System.out.println("Outside In CBR: The size of sending connections: "+ sendingConnections.size());
-			
-			if (getHost().toString().startsWith("n") && simTime > this.lastUpdate && sendingConnections.size() > 0) {
-				//System.out.println("Inside In CBR: The size of sending connections: "+ sendingConnections.size());
-				/* sending data */
-				reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
-				//reduceEnergy(this.transmitEnergy);
+			if (energy.turnOffIfDepleted(address)) {
+				return; /* no more energy to start new transfers */
 			}
-			this.lastUpdate = simTime;
 			
-			if (getHost().toString().startsWith("n") && simTime > this.lastScanUpdate + this.scanInterval) {
-				/* scanning at this update round */
-				reduceEnergy(this.scanEnergy);
-				this.lastScanUpdate = simTime;
+			if (energy.isBatched()) {
+				energy.setActivity(address, sendingConnections.size() > 0, false);
+			}
+			else {
+				energy.drain(address, sendingConnections.size() > 0, false);
 			}
 		}
 	}
@@ -338,7 +329,7 @@ public class ClusterBasedRouter extends ActiveRouter
 				
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
+				if (othRouter.hasMessage(m) ||
 						m.getHops().contains(other)) {
 					continue; 
 				}
@@ -438,9 +429,25 @@ public class ClusterBasedRouter extends ActiveRouter
 		else if (key.equals(TOTAL_ENERGY_VALUE))
 			this.totalEnergy = (Double) newValue;
 	}
+
+	/**
+	 * Called by the combus if a double value (e.g. the energy value)
+	 * is changed
+	 * @param key The ID of the value
+	 * @param newValue The new value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		if(key.equals(ENERGY_VALUE_ID))
+			this.currentEnergy = newValue;
+		else if (key.equals(PREVIOUS_ENERGY_VALUE))
+			this.previousEnergy = newValue;
+		else if (key.equals(TOTAL_ENERGY_VALUE))
+			this.totalEnergy = newValue;
+	}
 	
 	@Override
 	public void changedConnection(Connection con) {
+		updatePeerSummary(con);
 		DTNHost currentHost = getHost();
 		DTNHost otherHost = con.getOtherNode(getHost());
 		MessageRouter mRouter = otherHost.getRouter();
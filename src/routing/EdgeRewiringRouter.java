@@ -37,7 +37,7 @@ public class EdgeRewiringRouter extends ActiveRouter {
 	public EdgeRewiringRouter(Settings s) {
 		super(s);
 		String filePath = s.getSetting("neighborListFile");
-		reader = new NeighborListReader(filePath);
+		reader = NeighborListReader.getReader(filePath);
 		
 	}
 	
@@ -69,6 +69,15 @@ public class EdgeRewiringRouter extends ActiveRouter {
 		this.tryAllMessagesToAllConnections();
 	}
 	
+	/**
+	 * Returns the time of the next transfer event, TTL check or neighbor
+	 * list sampling, whichever comes first.
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		return Math.min(getNextTransferEventTime(), this.lastSamplingUpdate);
+	}
+
 	protected void killNodesInFailedNodeList(){
 		
 		 if (SimClock.getIntTime() >= this.lastSamplingUpdate) {
@@ -109,11 +118,7 @@ public class EdgeRewiringRouter extends ActiveRouter {
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getSendQueue(), connections);
 	}
 		
 	
@@ -147,14 +152,11 @@ public class EdgeRewiringRouter extends ActiveRouter {
 		host = getHost();
 		otherHost = con.getOtherNode(getHost());
 		
-		String sOtherHost;
-		sOtherHost = otherHost.toString(); 
-		
 //		if(SimClock.getIntTime() == 3600){
 //			System.out.print("The neighborlist: " + host.getNeighborList().toString());
 //		}
 		
-		if(host.getNeighborList().contains(sOtherHost)) {
+		if(host.isNeighbor(otherHost)) {
 				//|| otherHost.getNeighborList().contains(host.toString())){
 			canMsgBeSent = true;
 //			System.out.println(host + " = " + sOtherHost.toString());
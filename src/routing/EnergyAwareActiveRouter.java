@@ -126,12 +126,10 @@ public abstract class EnergyAwareActiveRouter extends MessageRouter {
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
 		ArrayList<Message> temp = 
-			new ArrayList<Message>(this.getMessageCollection());
+			new ArrayList<Message>(this.getMessagesFor(other));
 		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -332,7 +330,7 @@ public abstract class EnergyAwareActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 	
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ){
+		if ( hasMessage(m) || isDeliveredMessage(m) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 		
@@ -447,12 +445,10 @@ public abstract class EnergyAwareActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+		for (Connection con : getConnections()) {
+			DTNHost to = con.getOtherNode(getHost());
+			for (Message m : getMessagesFor(to)) {
+				forTuples.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
 		
@@ -15,6 +15,14 @@ import core.*;
  */
 public class EnergyAwareHeirarchialRouter extends ActiveRouter 
 		implements ModuleCommunicationListener{
+	/** Role pairs that may forward upstream and downstream messages */
+	private static final RolePermissions PERMISSIONS = new RolePermissions()
+		.allowUpstream(HostRole.DATA_MULE, HostRole.CONTROL_STATION)
+		.allowUpstream(HostRole.SURVIVOR, HostRole.DATA_MULE)
+		.allowUpstream(HostRole.SURVIVOR, HostRole.SURVIVOR)
+		.allowDownstream(HostRole.CONTROL_STATION, HostRole.DATA_MULE)
+		.allowDownstream(HostRole.DATA_MULE, HostRole.SURVIVOR)
+		.allowDownstream(HostRole.SURVIVOR, HostRole.SURVIVOR);
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -41,8 +49,6 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
-	private double lastScanUpdate;
-	private double lastUpdate;
 	private double scanInterval;	
 	private double samplingInterval;
 	private double lastSampleUpdate;
@@ -116,8 +122,6 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
 		this.comBus = null;
-		this.lastScanUpdate = 0;
-		this.lastUpdate = 0;
 		this.samplingInterval = 300;
 		this.lastSampleUpdate = 0;
 		this.startSamplingTime = 1800;
@@ -144,9 +148,9 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 			return;
 		}
 		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		}
 	}
 	
@@ -155,30 +159,26 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 	 * and scanning for the other nodes. 
 	 */
 	protected void reduceSendingAndScanningEnergy() {
-		double simTime = SimClock.getTime();
-		
+		EnergyEngine energy = EnergyEngine.getEngine();
+		int address = getHost().getAddress();
 		if (this.comBus == null) {
 			this.comBus = getHost().getComBus();
 			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
 			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			energy.register(getHost(), this.scanEnergy, this.transmitEnergy,
+					this.scanInterval, this.warmupTime, EnergyEngine.CONSUMES |
+					EnergyEngine.DRAIN_SCANNING);
 		}
 		
-		if (this.currentEnergy <= 0) {
-			/* turn radio off */
-			this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
+		if (energy.turnOffIfDepleted(address)) {
 			return; /* no more energy to start new transfers */
 		}
 		
-		if (simTime > this.lastUpdate && sendingConnections.size() > 0) {
-			/* sending data */
-			reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
+		if (energy.isBatched()) {
+			energy.setActivity(address, sendingConnections.size() > 0, false);
 		}
-		this.lastUpdate = simTime;
-		
-		if (simTime > this.lastScanUpdate + this.scanInterval) {
-			/* scanning at this update round */
-			reduceEnergy(this.scanEnergy);
-			this.lastScanUpdate = simTime;
+		else {
+			energy.drain(address, sendingConnections.size() > 0, false);
 		}
 	}
 	
@@ -214,7 +214,7 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 	private void computeExemplar() {
 		DTNHost host = getHost();
 		
-		if(host.toString().startsWith("CD") || host.toString().startsWith("control_station"))
+		if(host.getRole() == HostRole.DATA_MULE || host.getRole() == HostRole.CONTROL_STATION)
 			return;
 		
 		if(host.getConnections().size() <1)
@@ -226,7 +226,7 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 		DTNHost chosenExemplar = host;
 		
 		//calculate alpha, beta and gamma for the current host
-		double alpha = (double)host.getComBus().getProperty(ENERGY_VALUE_ID);
+		double alpha = host.getComBus().getDouble(ENERGY_VALUE_SLOT, 0);
 		double beta = (double) host.getProcessingPower();
 		double gamma = (double) host.getConnections().size();
 		
@@ -240,7 +240,7 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 				continue;
 			}
 			//System.out.println(" The Other host "+oHost.toString()+" Is exemplar ? " + oHost.isExemplar());
-			alpha = (double) oHost.getComBus().getProperty(ENERGY_VALUE_ID);
+			alpha = oHost.getComBus().getDouble(ENERGY_VALUE_SLOT, 0);
 			beta = (double) oHost.getProcessingPower();
 			gamma = (double) oHost.getConnections().size();
 			
@@ -259,7 +259,7 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 				continue;
 			}
 			
-			alpha = (double) oHost.getComBus().getProperty(ENERGY_VALUE_ID);
+			alpha = oHost.getComBus().getDouble(ENERGY_VALUE_SLOT, 0);
 			beta = (double) oHost.getProcessingPower();
 			gamma = (double) oHost.getConnections().size();
 			
@@ -311,10 +311,10 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 		
 		if((host.isExemplar() && !oHost.isExemplar()) ||
 				(!host.isExemplar() && oHost.isExemplar()) ||
-				(host.toString().startsWith("CD") && oHost.toString().startsWith("n")) ||
-				(host.toString().startsWith("n") && oHost.toString().startsWith("CD")) ||
-				(host.toString().startsWith("CD") && oHost.toString().startsWith("control_station")) ||
-				(host.toString().startsWith("control_station") && oHost.toString().startsWith("CD"))){
+				(host.getRole() == HostRole.DATA_MULE && oHost.getRole() == HostRole.SURVIVOR) ||
+				(host.getRole() == HostRole.SURVIVOR && oHost.getRole() == HostRole.DATA_MULE) ||
+				(host.getRole() == HostRole.DATA_MULE && oHost.getRole() == HostRole.CONTROL_STATION) ||
+				(host.getRole() == HostRole.CONTROL_STATION && oHost.getRole() == HostRole.DATA_MULE)){
 						return true;
 		}
 		else
@@ -325,42 +325,12 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 	protected Message tryAllMessages(Connection con, List<Message> messages) {
 		//System.out.println("restricted epidemic -  try all messages");
 		
-		boolean canMsgBeSent= false;
+		HostRole from = getHost().getRole();
+		HostRole to = con.getOtherNode(getHost()).getRole();
 		for (Message m : messages) {
-			
-			canMsgBeSent = false;
-			DTNHost host, otherHost;
-			host = getHost();
-			otherHost = con.getOtherNode(getHost());
-			String sHost, sOtherHost;
-			sHost = host.toString();
-			sOtherHost = otherHost.toString(); 
-			
-			//System.out.println("The message " + m.toString() +" can be transferred between "+sHost+"  -  "+sOtherHost);
-			
-			//from DTN nodes to relief center
-			if(m.toString().startsWith("M")){
-					if(	(sHost.startsWith("CD") && sOtherHost.startsWith("control_station"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("CD"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("n"))){
-						//System.out.println("The message " + m.toString() +" is sent from "+sHost+" to "+sOtherHost);
-						canMsgBeSent =true;
-					
-				}
-			}
-			//from relief center to DTN nodes
-			if(m.toString().startsWith("N")){
-				if(	(sHost.startsWith("control_station") && sOtherHost.startsWith("CD"))||
-						(sHost.startsWith("CD")	&&  sOtherHost.startsWith("n"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("n"))){
-						//System.out.println("The message " + m.toString() +" is sent from "+sHost+" to "+sOtherHost);
-						canMsgBeSent =true;
-						}
-			}
-			
 			int retVal = -1;
 			
-			if(canMsgBeSent){
+			if (PERMISSIONS.canSend(m, from, to)) {
 				retVal = startTransfer(m, con); 
 			}
 				
@@ -391,6 +361,16 @@ public class EnergyAwareHeirarchialRouter extends ActiveRouter
 		this.currentEnergy = (Double)newValue;
 	}
 
+	/**
+	 * Called by the combus if a double value (e.g. the energy value)
+	 * is changed
+	 * @param key The ID of the value
+	 * @param newValue The new value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		this.currentEnergy = newValue;
+	}
+
 	
 	@Override
 	public String toString() {
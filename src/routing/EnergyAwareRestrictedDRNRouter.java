@@ -7,7 +7,7 @@ package routing;
 import java.util.List;
 
 import core.Connection;
-import core.DTNHost;
+import core.HostRole;
 import core.Message;
 import core.Settings;
 
@@ -16,6 +16,16 @@ import core.Settings;
  * connections at a time.
  */
 public class EnergyAwareRestrictedDRNRouter extends EnergyAwareRouter {
+	/** Role pairs that may forward upstream and downstream messages */
+	private static final RolePermissions PERMISSIONS = new RolePermissions()
+		.allowUpstream(HostRole.DATA_MULE, HostRole.COORDINATION_CENTER)
+		.allowUpstream(HostRole.SURVIVOR, HostRole.AUX_DATABASE)
+		.allowUpstream(HostRole.AUX_DATABASE, HostRole.DATA_MULE)
+		.allowUpstream(HostRole.SURVIVOR, HostRole.SURVIVOR)
+		.allowDownstream(HostRole.COORDINATION_CENTER, HostRole.AUX_DATABASE)
+		.allowDownstream(HostRole.AUX_DATABASE, HostRole.DATA_MULE)
+		.allowDownstream(HostRole.DATA_MULE, HostRole.SURVIVOR)
+		.allowDownstream(HostRole.SURVIVOR, HostRole.SURVIVOR);
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -48,44 +58,12 @@ public class EnergyAwareRestrictedDRNRouter extends EnergyAwareRouter {
 	protected Message tryAllMessages(Connection con, List<Message> messages) {
 		//System.out.println("restricted epidemic -  try all messages");
 		
-		boolean canMsgBeSent= false;
+		HostRole from = getHost().getRole();
+		HostRole to = con.getOtherNode(getHost()).getRole();
 		for (Message m : messages) {
-			
-			canMsgBeSent = false;
-			DTNHost host, otherHost;
-			host = getHost();
-			otherHost = con.getOtherNode(getHost());
-			String sHost, sOtherHost;
-			sHost = host.toString();
-			sOtherHost = otherHost.toString(); 
-			
-			//System.out.println("The message " + m.toString() +" can be transferred between "+sHost+"  -  "+sOtherHost);
-			
-			//from DTN nodes to relief center
-			if(m.toString().startsWith("M")){
-					if(	(sHost.startsWith("CD") && sOtherHost.startsWith("CS"))||
-							(sHost.startsWith("n") && sOtherHost.startsWith("ADB"))||
-						(sHost.startsWith("ADB") && sOtherHost.startsWith("CD"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("n"))){
-						//System.out.println("The message " + m.toString() +" is sent from "+sHost+" to "+sOtherHost);
-						canMsgBeSent =true;
-					
-				}
-			}
-			//from relief center to DTN nodes
-			if(m.toString().startsWith("N")){
-				if(	(sHost.startsWith("CS") && sOtherHost.startsWith("ADB"))||
-						(sHost.startsWith("ADB") && sOtherHost.startsWith("CD"))||
-						(sHost.startsWith("CD")	&&  sOtherHost.startsWith("n"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("n"))){
-						//System.out.println("The message " + m.toString() +" is sent from "+sHost+" to "+sOtherHost);
-						canMsgBeSent =true;
-						}
-			}
-			
 			int retVal = -1;
 			
-			if(canMsgBeSent){
+			if (PERMISSIONS.canSend(m, from, to)) {
 				retVal = startTransfer(m, con); 
 			}
 				
@@ -6,10 +6,10 @@ package routing;
 
 import java.util.Random;
 
+import core.HostRole;
 import core.Message;
 import core.ModuleCommunicationBus;
 import core.ModuleCommunicationListener;
-import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -46,8 +46,6 @@ public class EnergyAwareRestrictedEpidemicRouter extends RestrictedEpidemicRoute
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
-	private double lastScanUpdate;
-	private double lastUpdate;
 	private double scanInterval;	
 	private ModuleCommunicationBus comBus;
 	private static Random rng = null;
@@ -116,8 +114,6 @@ public class EnergyAwareRestrictedEpidemicRouter extends RestrictedEpidemicRoute
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
 		this.comBus = null;
-		this.lastScanUpdate = 0;
-		this.lastUpdate = 0;
 	}
 	
 	@Override
@@ -141,9 +137,9 @@ public class EnergyAwareRestrictedEpidemicRouter extends RestrictedEpidemicRoute
 			return;
 		}
 		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		}
 	}
 	
@@ -152,37 +148,34 @@ public class EnergyAwareRestrictedEpidemicRouter extends RestrictedEpidemicRoute
 	 * and scanning for the other nodes. 
 	 */
 	protected void reduceSendingAndScanningEnergy() {
-		double simTime = SimClock.getTime();
-		
+		EnergyEngine energy = EnergyEngine.getEngine();
+		int address = getHost().getAddress();
 		if (this.comBus == null) {
 			this.comBus = getHost().getComBus();
 			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
 			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			
+			/* scanning doesn't consume energy */
+			int mode = getHost().getRole() == HostRole.SURVIVOR ?
+					EnergyEngine.CONSUMES : 0;
+			energy.register(getHost(), this.scanEnergy, this.transmitEnergy,
+					this.scanInterval, this.warmupTime, mode);
 		}
 		if(this.comBus.getProperty(ORIGINAL_ENERGY_VALUE) == null){
 			this.comBus.addProperty(ORIGINAL_ENERGY_VALUE, this.originalEnergy);
 			this.comBus.subscribe(ORIGINAL_ENERGY_VALUE, this);
 		}
 		
-		if (this.currentEnergy <= 0) {
-			/* turn radio off */
-			this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
+		if (energy.turnOffIfDepleted(address)) {
 			return; /* no more energy to start new transfers */
 		}
 		
-		if (this.getHost().toString().startsWith("n") &&
-				simTime > this.lastUpdate && sendingConnections.size() > 0) {
-			/* sending data */
-			reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
+		if (energy.isBatched()) {
+			energy.setActivity(address, sendingConnections.size() > 0, false);
+		}
+		else {
+			energy.drain(address, sendingConnections.size() > 0, false);
 		}
-		this.lastUpdate = simTime;
-		
-//		if (this.getHost().toString().startsWith("n") &&
-//				simTime > this.lastScanUpdate + this.scanInterval) {
-//			 //scanning at this update round 
-//			reduceEnergy(this.scanEnergy);
-//			this.lastScanUpdate = simTime;
-//		}
 	}
 	
 	@Override
@@ -221,6 +214,20 @@ public class EnergyAwareRestrictedEpidemicRouter extends RestrictedEpidemicRoute
 		}
 	}
 
+	/**
+	 * Called by the combus if a double value (e.g. the energy value)
+	 * is changed
+	 * @param key The ID of the value
+	 * @param newValue The new value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		if(key.equals(ENERGY_VALUE_ID))
+			this.currentEnergy = newValue;
+		else if(key.equals(ORIGINAL_ENERGY_VALUE)){
+			this.originalEnergy = newValue;
+		}
+	}
+
 	
 	@Override
 	public String toString() {
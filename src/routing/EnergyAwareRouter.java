@@ -42,8 +42,6 @@ public class EnergyAwareRouter extends ActiveRouter
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
-	private double lastScanUpdate;
-	private double lastUpdate;
 	private double scanInterval;	
 	private ModuleCommunicationBus comBus;
 	private static Random rng = null;
@@ -112,8 +110,6 @@ public class EnergyAwareRouter extends ActiveRouter
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
 		this.comBus = null;
-		this.lastScanUpdate = r.lastScanUpdate;
-		this.lastUpdate = r.lastUpdate;
 		this.isEnergyConstrained = r.isEnergyConstrained;
 	}
 	
@@ -138,9 +134,9 @@ public class EnergyAwareRouter extends ActiveRouter
 			return;
 		}
 		
-		comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		if (this.currentEnergy < 0) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		}
 	}
 	
@@ -149,34 +145,31 @@ public class EnergyAwareRouter extends ActiveRouter
 	 * and scanning for the other nodes. 
 	 */
 	protected void reduceSendingAndScanningEnergy() {
-		double simTime = SimClock.getTime();
 		if(this.isEnergyConstrained == 2){
+			EnergyEngine energy = EnergyEngine.getEngine();
+			int address = getHost().getAddress();
 			if (this.comBus == null) {
 				this.comBus = getHost().getComBus();
 				this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
 				this.comBus.subscribe(ENERGY_VALUE_ID, this);
+				
+				int mode = EnergyEngine.DRAIN_SCANNING;
+				if (getHost().getRole() == HostRole.SURVIVOR) {
+					mode |= EnergyEngine.CONSUMES;
+				}
+				energy.register(getHost(), this.scanEnergy, this.transmitEnergy,
+						this.scanInterval, this.warmupTime, mode);
 			}
 			
-			if (this.currentEnergy <= 0) {
-				/* turn radio off */
-				this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
+			if (energy.turnOffIfDepleted(address)) {
 				return; /* no more energy to start new transfers */
 			}
-			//System.out.println("Outside: In EnergyAwareRouter: The size of sending connections: "+ sendingConnections.size());
 			
-			if (getHost().toString().startsWith("n") && simTime > this.lastUpdate && sendingConnections.size() > 0) {
-				System.out.println("In EnergyAwareRouter: The size of sending connections: "+ sendingConnections.size());
-				
-				/* sending data */
-				//reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
-				reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
+			if (energy.isBatched()) {
+				energy.setActivity(address, sendingConnections.size() > 0, false);
 			}
-			this.lastUpdate = simTime;
-			
-			if (getHost().toString().startsWith("n") && simTime > this.lastScanUpdate + this.scanInterval) {
-				/* scanning at this update round */
-				reduceEnergy(this.scanEnergy);
-				this.lastScanUpdate = simTime;
+			else {
+				energy.drain(address, sendingConnections.size() > 0, false);
 			}
 		}
 	}
@@ -216,6 +209,16 @@ public class EnergyAwareRouter extends ActiveRouter
 		this.currentEnergy = (Double)newValue;
 	}
 
+	/**
+	 * Called by the combus if a double value (e.g. the energy value)
+	 * is changed
+	 * @param key The ID of the value
+	 * @param newValue The new value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		this.currentEnergy = newValue;
+	}
+
 	
 	@Override
 	public String toString() {
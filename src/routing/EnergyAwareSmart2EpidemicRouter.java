@@ -134,6 +134,7 @@ public class EnergyAwareSmart2EpidemicRouter extends RestrictedEpidemicRouter
 	}
 	@Override
 	public void changedConnection(Connection con) { 
+		updatePeerSummary(con);
 		updateContactFrequency(con);
 		
 	}
@@ -201,7 +202,7 @@ public class EnergyAwareSmart2EpidemicRouter extends RestrictedEpidemicRouter
 		if (getHost().getCurEnergy() <= 0) {
 			/* turn radio off */
 			//this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
-			getHost().getComBus().updateProperty(NetworkInterface.RANGE_ID, 0.0);
+			getHost().getComBus().setDouble(NetworkInterface.RANGE_SLOT, 0.0);
 			return; /* no more energy to start new transfers */
 		}
 		
@@ -494,8 +495,8 @@ public class EnergyAwareSmart2EpidemicRouter extends RestrictedEpidemicRouter
 	}	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * connections this node has. Messages are ordered by the sending
+	 * queue ({@link MessageRouter#getSendQueue()}). See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -507,11 +508,7 @@ public class EnergyAwareSmart2EpidemicRouter extends RestrictedEpidemicRouter
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-		
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getSendQueue(), connections);
 	}
 	@Override
 	public void update() {
@@ -548,6 +545,16 @@ public class EnergyAwareSmart2EpidemicRouter extends RestrictedEpidemicRouter
 
 	}
 
+	/**
+	 * Called by the combus if a double value (e.g. the energy value)
+	 * is changed
+	 * @param key The ID of the value
+	 * @param newValue The new value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+
+	}
+
 	
 	@Override
 	public String toString() {
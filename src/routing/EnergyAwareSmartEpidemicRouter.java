@@ -12,10 +12,10 @@ import java.util.Random;
 
 import core.Connection;
 import core.DTNHost;
+import core.HostRole;
 import core.Message;
 import core.ModuleCommunicationBus;
 import core.ModuleCommunicationListener;
-import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -62,8 +62,6 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 	/** energy usage per scan */
 	private double scanEnergy;
 	private double transmitEnergy;
-	private double lastScanUpdate;
-	private double lastUpdate;
 	private double scanInterval;	
 	private ModuleCommunicationBus comBus;
 	private static Random rng = null;
@@ -138,14 +136,13 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 		this.scanInterval = r.scanInterval;
 		this.warmupTime  = r.warmupTime;
 		this.comBus = null;
-		this.lastScanUpdate = 0;
-		this.lastUpdate = 0;
 		this.exemplarLastUpdate = 0;
 		this.isRelayExemplar = true;
 		this.noOfExemplars = r.noOfExemplars;
 	}
 	@Override
 	public void changedConnection(Connection con) { 
+		updatePeerSummary(con);
 		updateContactFrequency(con);
 		
 	}
@@ -185,9 +182,9 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 			return;
 		}
 		
-		this.comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+		this.comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		if (this.currentEnergy < 0) {
-			this.comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			this.comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		}
 	}
 	
@@ -196,45 +193,43 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 	 * and scanning for the other nodes. 
 	 */
 	protected void reduceSendingAndScanningEnergy() {
-		double simTime = SimClock.getTime();
-		
-		if(this.comBus == null){
+		EnergyEngine energy = EnergyEngine.getEngine();
+		int address = getHost().getAddress();
+		if (this.comBus == null) {
 			this.comBus = getHost().getComBus();
 		}
-		if (this.comBus.getProperty(ENERGY_VALUE_ID)== null) {
+		
+		if (this.comBus.getProperty(ENERGY_VALUE_ID) == null) {
 			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
 			this.comBus.subscribe(ENERGY_VALUE_ID, this);
 		}
-		
-		if(this.comBus.getProperty(ORIGINAL_ENERGY_VALUE)==null){
+		if (this.comBus.getProperty(ORIGINAL_ENERGY_VALUE) == null) {
 			this.comBus.addProperty(ORIGINAL_ENERGY_VALUE, this.originalEnergy);
 			this.comBus.subscribe(ORIGINAL_ENERGY_VALUE, this);
 		}
-		if(this.comBus.getProperty(PREVIOUS_ENERGY_VALUE)==null){
+		if (this.comBus.getProperty(PREVIOUS_ENERGY_VALUE) == null) {
 			this.comBus.addProperty(PREVIOUS_ENERGY_VALUE, this.previousEnergy);
 			this.comBus.subscribe(PREVIOUS_ENERGY_VALUE, this);
 		}
-		//System.out.println("VIJAY");
 		
-		if (this.currentEnergy <= 0) {
-			/* turn radio off */
-			this.comBus.updateProperty(NetworkInterface.RANGE_ID, 0.0);
-			return; /* no more energy to start new transfers */
+		if (!energy.isRegistered(address)) {
+			int mode = EnergyEngine.DRAIN_SCANNING;
+			if (getHost().getRole() == HostRole.SURVIVOR) {
+				mode |= EnergyEngine.CONSUMES;
+			}
+			energy.register(getHost(), this.scanEnergy, this.transmitEnergy,
+					this.scanInterval, this.warmupTime, mode);
 		}
-		//reduce energy for DTN nodes only - NOT rescue workers
-		if (this.getHost().toString().startsWith("n") &&
-				simTime > this.lastUpdate && sendingConnections.size() > 0) {
-			/* sending data */
-			reduceEnergy((simTime - this.lastUpdate) * this.transmitEnergy);
+		
+		if (energy.turnOffIfDepleted(address)) {
+			return; /* no more energy to start new transfers */
 		}
-		this.lastUpdate = simTime;
 		
-		if ( this.getHost().toString().startsWith("n") &&
-				simTime > this.lastScanUpdate + this.scanInterval) {
-			//System.out.println(" The scan energy being lost at " + simTime +" for host: " + getHost().toString() );
-			// scanning at this update round 
-			reduceEnergy(this.scanEnergy);
-			this.lastScanUpdate = simTime;
+		if (energy.isBatched()) {
+			energy.setActivity(address, sendingConnections.size() > 0, false);
+		}
+		else {
+			energy.drain(address, sendingConnections.size() > 0, false);
 		}
 	}
 	
@@ -470,8 +465,8 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 	}	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * connections this node has. Messages are ordered by the sending
+	 * queue ({@link MessageRouter#getSendQueue()}). See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -483,11 +478,7 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-		
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getSendQueue(), connections);
 	}
 	@Override
 	public void update() {
@@ -533,6 +524,23 @@ public class EnergyAwareSmartEpidemicRouter extends RestrictedEpidemicRouter
 			this.currentExemplarsList = (ArrayList<DTNHost>) newValue;
 	}
 
+	/**
+	 * Called by the combus if a double value (e.g. the energy value)
+	 * is changed
+	 * @param key The ID of the value
+	 * @param newValue The new value
+	 */
+	public void moduleDoubleChanged(String key, double newValue) {
+		if(key.equals(ENERGY_VALUE_ID))
+			this.currentEnergy = newValue;
+		else if(key.equals(ORIGINAL_ENERGY_VALUE))
+			this.originalEnergy = newValue;
+		else if (key.equals(PREVIOUS_ENERGY_VALUE))
+			this.previousEnergy = newValue;
+		else
+			moduleValueChanged(key, newValue);
+	}
+
 	
 	@Override
 	public String toString() {
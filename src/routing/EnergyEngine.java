@@ -0,0 +1,387 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+import core.DTNSim;
+import core.ModuleCommunicationBus;
+import core.ModuleCommunicationDoubleListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Energy accounting of the energy aware routers. Keeps the residual energy,
+ * the scanning, transmitting and receiving state, and the depletion time of
+ * every registered host in arrays indexed by the host's address.
+ * <P>
+ * The residual energy is still published as the
+ * {@link ActiveRouter#ENERGY_VALUE_ID} value of the hosts' communication
+ * buses, so the routers and other modules that follow that value keep
+ * working; the engine follows the value too, so changes made by others
+ * (e.g., failing a node by setting its energy to zero) are taken into
+ * account.
+ * </P>
+ * <P>
+ * By default each router drains its host's energy when the host is updated
+ * (see {@link #drain(int, boolean, boolean)}). With the batched updates
+ * (see {@link core.World#BATCHED_ENERGY_S}) the routers only report their
+ * transmitting and receiving state and the world drains the whole
+ * population in one pass per update interval (see {@link #drainAll()}).
+ * In both cases a host's radio is turned off once, when its energy is found
+ * to be depleted, instead of on every update after that.
+ * </P>
+ */
+public class EnergyEngine {
+	/** Mode flag: the host consumes energy */
+	public static final int CONSUMES = 1;
+	/** Mode flag: receiving consumes energy like transmitting */
+	public static final int DRAIN_RECEIVING = 2;
+	/** Mode flag: scanning for other hosts consumes energy */
+	public static final int DRAIN_SCANNING = 4;
+
+	/** State flag: the host is registered */
+	private static final int REGISTERED = 8;
+	/** State flag: the host was transmitting at the last update */
+	private static final int TRANSMITTING = 16;
+	/** State flag: the host was receiving at the last update */
+	private static final int RECEIVING = 32;
+	/** State flag: the radio of the host has been turned off */
+	private static final int RADIO_OFF = 64;
+
+	/** Initial capacity of the host arrays */
+	private static final int INIT_CAPACITY = 64;
+
+	/** The engine of the current run (or null if not created yet) */
+	private static EnergyEngine engine;
+
+	/** Registered hosts (index is the address) */
+	private DTNHost[] hosts;
+	/** Mode and state flags of the hosts */
+	private int[] flags;
+	/** Residual energy of the hosts */
+	private double[] residual;
+	/** Time of the last drain of the hosts */
+	private double[] lastDrain;
+	/** Time of the last scan of the hosts */
+	private double[] lastScan;
+	/** Time when the host's energy was depleted (-1 if not depleted) */
+	private double[] depletionTime;
+	/** Energy usage per scan */
+	private double[] scanEnergy;
+	/** Energy usage per second when transmitting or receiving */
+	private double[] transmitEnergy;
+	/** Interval between the scans */
+	private double[] scanInterval;
+	/** Simulation time after which the energy starts to decrease */
+	private double[] warmupTime;
+	/** Are the hosts drained in one batched pass */
+	private boolean batched;
+
+	static {
+		DTNSim.registerForReset(EnergyEngine.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Constructor.
+	 */
+	private EnergyEngine() {
+		this.hosts = new DTNHost[0];
+		this.flags = new int[0];
+		ensureCapacity(INIT_CAPACITY - 1);
+		this.batched = false;
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		engine = null;
+	}
+
+	/**
+	 * Returns the energy engine of the current run
+	 * @return The energy engine
+	 */
+	public static EnergyEngine getEngine() {
+		if (engine == null) {
+			engine = new EnergyEngine();
+		}
+		return engine;
+	}
+
+	/**
+	 * Sets whether the hosts are drained in one batched pass per update
+	 * interval instead of at the updates of their routers
+	 * @param batched True for the batched drain
+	 */
+	public void setBatched(boolean batched) {
+		this.batched = batched;
+	}
+
+	/**
+	 * Returns true if the hosts are drained in one batched pass
+	 * @return True if {@link #drainAll()} drains the hosts
+	 */
+	public boolean isBatched() {
+		return this.batched;
+	}
+
+	/**
+	 * Makes sure the host arrays can hold the given address
+	 * @param address The address
+	 */
+	private void ensureCapacity(int address) {
+		if (address < this.hosts.length) {
+			return;
+		}
+		int size = Math.max(address + 1, this.hosts.length * 2);
+		this.hosts = Arrays.copyOf(this.hosts, size);
+		this.flags = Arrays.copyOf(this.flags, size);
+		this.residual = copyOf(this.residual, size);
+		this.lastDrain = copyOf(this.lastDrain, size);
+		this.lastScan = copyOf(this.lastScan, size);
+		this.depletionTime = copyOf(this.depletionTime, size);
+		this.scanEnergy = copyOf(this.scanEnergy, size);
+		this.transmitEnergy = copyOf(this.transmitEnergy, size);
+		this.scanInterval = copyOf(this.scanInterval, size);
+		this.warmupTime = copyOf(this.warmupTime, size);
+	}
+
+	/**
+	 * Returns a copy of an array with a new size
+	 * @param array The array (or null for a new array)
+	 * @param size Size of the copy
+	 * @return The copy
+	 */
+	private static double[] copyOf(double[] array, int size) {
+		return array == null ? new double[size] : Arrays.copyOf(array, size);
+	}
+
+	/**
+	 * Registers a host to the engine. The host's initial energy is read from
+	 * its communication bus, so the router must have added the
+	 * {@link ActiveRouter#ENERGY_VALUE_ID} value before calling this.
+	 * @param host The host
+	 * @param scanEnergy Energy usage per scan
+	 * @param transmitEnergy Energy usage per second when transmitting (and
+	 * receiving, if {@link #DRAIN_RECEIVING} is set)
+	 * @param scanInterval Minimum interval between the scans
+	 * @param warmupTime Simulation time after which the energy starts to
+	 * decrease
+	 * @param mode Mode flags ({@link #CONSUMES}, {@link #DRAIN_RECEIVING},
+	 * {@link #DRAIN_SCANNING})
+	 */
+	public void register(DTNHost host, double scanEnergy,
+			double transmitEnergy, double scanInterval, double warmupTime,
+			int mode) {
+		final int address = host.getAddress();
+		ensureCapacity(address);
+
+		ModuleCommunicationBus comBus = host.getComBus();
+		this.hosts[address] = host;
+		this.flags[address] = REGISTERED | mode;
+		this.residual[address] = comBus.getDouble(
+				ActiveRouter.ENERGY_VALUE_SLOT, 0);
+		this.lastDrain[address] = 0;
+		this.lastScan[address] = 0;
+		this.depletionTime[address] = -1;
+		this.scanEnergy[address] = scanEnergy;
+		this.transmitEnergy[address] = transmitEnergy;
+		this.scanInterval[address] = scanInterval;
+		this.warmupTime[address] = warmupTime;
+
+		comBus.subscribe(ActiveRouter.ENERGY_VALUE_ID,
+				new ModuleCommunicationDoubleListener() {
+			public void moduleDoubleChanged(String key, double newValue) {
+				residual[address] = newValue;
+			}
+			public void moduleValueChanged(String key, Object newValue) {
+				residual[address] = (Double)newValue;
+			}
+		});
+	}
+
+	/**
+	 * Returns true if the host with the given address is registered
+	 * @param address Address of the host
+	 * @return True if the host is registered
+	 */
+	public boolean isRegistered(int address) {
+		return address < this.flags.length &&
+			(this.flags[address] & REGISTERED) != 0;
+	}
+
+	/**
+	 * Returns the residual energy of a host. For hosts that are not
+	 * registered, the energy value of the host's communication bus is
+	 * returned.
+	 * @param host The host
+	 * @return The residual energy, or NaN if the host has no energy value
+	 */
+	public double getEnergy(DTNHost host) {
+		int address = host.getAddress();
+		if (isRegistered(address)) {
+			return this.residual[address];
+		}
+		return host.getComBus().getDouble(ActiveRouter.ENERGY_VALUE_SLOT,
+				Double.NaN);
+	}
+
+	/**
+	 * Returns the time when a registered host's energy was depleted
+	 * @param address Address of the host
+	 * @return The depletion time, or -1 if the energy is not depleted
+	 */
+	public double getDepletionTime(int address) {
+		return this.depletionTime[address];
+	}
+
+	/**
+	 * Returns true if a registered host was transmitting at its last update
+	 * @param address Address of the host
+	 * @return True if the host was transmitting
+	 */
+	public boolean isTransmitting(int address) {
+		return (this.flags[address] & TRANSMITTING) != 0;
+	}
+
+	/**
+	 * Returns true if a registered host was receiving at its last update
+	 * @param address Address of the host
+	 * @return True if the host was receiving
+	 */
+	public boolean isReceiving(int address) {
+		return (this.flags[address] & RECEIVING) != 0;
+	}
+
+	/**
+	 * Turns the radio of a registered host off if its energy is depleted.
+	 * The radio is turned off only once.
+	 * @param address Address of the host
+	 * @return True if the energy is depleted
+	 */
+	public boolean turnOffIfDepleted(int address) {
+		if (this.residual[address] > 0) {
+			return false;
+		}
+		if (this.depletionTime[address] < 0) {
+			this.depletionTime[address] = SimClock.getTime();
+		}
+		if ((this.flags[address] & RADIO_OFF) == 0) {
+			this.flags[address] |= RADIO_OFF;
+			this.hosts[address].getComBus().setDouble(
+					NetworkInterface.RANGE_SLOT, 0.0);
+		}
+		return true;
+	}
+
+	/**
+	 * Records the transmitting and receiving state of a registered host
+	 * @param address Address of the host
+	 * @param transmitting Is the host transmitting
+	 * @param receiving Is the host receiving
+	 */
+	public void setActivity(int address, boolean transmitting,
+			boolean receiving) {
+		int f = this.flags[address] & ~(TRANSMITTING | RECEIVING);
+		if (transmitting) {
+			f |= TRANSMITTING;
+		}
+		if (receiving) {
+			f |= RECEIVING;
+		}
+		this.flags[address] = f;
+	}
+
+	/**
+	 * Drains the energy that a registered host has used for transmitting
+	 * and receiving since its last drain, and for scanning if it's time for
+	 * a scan. The caller should check first that the energy is not depleted
+	 * (see {@link #turnOffIfDepleted(int)}).
+	 * @param address Address of the host
+	 * @param transmitting Is the host transmitting
+	 * @param receiving Is the host receiving
+	 */
+	public void drain(int address, boolean transmitting, boolean receiving) {
+		setActivity(address, transmitting, receiving);
+		drain(address, SimClock.getTime());
+	}
+
+	/**
+	 * Drains the energy of a registered host using its recorded state
+	 * @param address Address of the host
+	 * @param simTime The current simulation time
+	 */
+	private void drain(int address, double simTime) {
+		int f = this.flags[address];
+		if ((f & CONSUMES) != 0 && simTime > this.lastDrain[address]) {
+			double amount = (simTime - this.lastDrain[address]) *
+				this.transmitEnergy[address];
+			if ((f & TRANSMITTING) != 0) {
+				reduceEnergy(address, amount, simTime);
+			}
+			if ((f & (DRAIN_RECEIVING | RECEIVING)) ==
+				(DRAIN_RECEIVING | RECEIVING)) {
+				reduceEnergy(address, amount, simTime);
+			}
+		}
+		this.lastDrain[address] = simTime;
+
+		if ((f & (CONSUMES | DRAIN_SCANNING)) == (CONSUMES | DRAIN_SCANNING)
+				&& simTime > this.lastScan[address] +
+				this.scanInterval[address]) {
+			/* scanning at this update round */
+			reduceEnergy(address, this.scanEnergy[address], simTime);
+			this.lastScan[address] = simTime;
+		}
+	}
+
+	/**
+	 * Drains all the registered hosts whose energy is not depleted, using
+	 * the transmitting and receiving state they had at their last update.
+	 * Does nothing unless the batched drain is used.
+	 */
+	public void drainAll() {
+		if (!this.batched) {
+			return;
+		}
+		double simTime = SimClock.getTime();
+		for (int i = 0, n = this.flags.length; i < n; i++) {
+			if ((this.flags[i] & (REGISTERED | RADIO_OFF)) != REGISTERED) {
+				continue; /* not registered or already out of energy */
+			}
+			if (!turnOffIfDepleted(i)) {
+				drain(i, simTime);
+				turnOffIfDepleted(i);
+			}
+		}
+	}
+
+	/**
+	 * Reduces the given amount from a host's energy through its
+	 * communication bus. If the energy level goes below zero, sets the level
+	 * to zero. Does nothing if the warmup time has not passed.
+	 * @param address Address of the host
+	 * @param amount The amount of energy to reduce
+	 * @param simTime The current simulation time
+	 */
+	private void reduceEnergy(int address, double amount, double simTime) {
+		if (simTime < this.warmupTime[address]) {
+			return;
+		}
+
+		ModuleCommunicationBus comBus = this.hosts[address].getComBus();
+		comBus.updateDouble(ActiveRouter.ENERGY_VALUE_SLOT, -amount);
+		if (this.residual[address] < 0) {
+			comBus.setDouble(ActiveRouter.ENERGY_VALUE_SLOT, 0.0);
+		}
+		if (this.residual[address] <= 0 && this.depletionTime[address] < 0) {
+			this.depletionTime[address] = simTime;
+		}
+	}
+}
@@ -73,7 +73,7 @@ public class GrnMaxPropRouter extends MaxPropRouter {
 				
 					/* skip messages that the other host has or that have
 					 * passed the other host */
-					if (othRouter.hasMessage(m.getId()) ||
+					if (othRouter.hasMessage(m) ||
 							m.getHops().contains(other)) {
 						continue; 
 					}
@@ -100,10 +100,7 @@ public class GrnMaxPropRouter extends MaxPropRouter {
 		host = getHost();
 		otherHost = con.getOtherNode(getHost());
 		
-		String sOtherHost;
-		sOtherHost = otherHost.toString(); 
-		
-		if(host.getNeighborList().contains(sOtherHost)){
+		if(host.isNeighbor(otherHost)){
 			canMsgBeSent = true;
 		}
 
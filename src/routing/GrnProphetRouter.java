@@ -77,7 +77,7 @@ public class GrnProphetRouter extends ProphetRouter {
 			
 			for (Message m : msgCollection) {
 				
-				if (othRouter.hasMessage(m.getId())) {
+				if (othRouter.hasMessage(m)) {
 					continue; // skip messages that the other one has
 				}
 				if (othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
@@ -107,10 +107,7 @@ public class GrnProphetRouter extends ProphetRouter {
 		host = getHost();
 		otherHost = con.getOtherNode(getHost());
 		
-		String sOtherHost;
-		sOtherHost = otherHost.toString(); 
-		
-		if(host.getNeighborList()!= null && host.getNeighborList().contains(sOtherHost)){
+		if(host.isNeighbor(otherHost)){
 			
 			canMsgBeSent = true;
 		}
@@ -59,10 +59,7 @@ public class GrnSprayAndWaitRouter extends SprayAndWaitRouter {
 		host = getHost();
 		otherHost = con.getOtherNode(getHost());
 		
-		String sOtherHost;
-		sOtherHost = otherHost.toString(); 
-		
-		if(host.getNeighborList()!= null && host.getNeighborList().contains(sOtherHost)){
+		if(host.isNeighbor(otherHost)){
 			canMsgBeSent = true;
 		}
 
@@ -117,6 +117,7 @@ public class MaxPropRouter extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		updatePeerSummary(con);
 		if (con.isUp()) { // new connection
 			this.costsForMessages = null; // invalidate old cost estimates
 			
@@ -343,7 +344,7 @@ public class MaxPropRouter extends ActiveRouter {
 			for (Message m : msgCollection) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
+				if (othRouter.hasMessage(m) ||
 						m.getHops().contains(other)) {
 					continue; 
 				}
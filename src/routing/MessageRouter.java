@@ -4,25 +4,32 @@
  */
 package routing;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.TreeSet;
 
 import core.Application;
 import core.Connection;
 import core.DTNHost;
+import core.DTNSim;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
-import core.SimScenario;
 import core.Tuple;
 
 /**
@@ -68,12 +75,36 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -999;
 	
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	protected HashMap<String, Message> incomingMessages;
-	/** The messages this router is carrying */
-	private HashMap<String, Message> messages; 
-	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
+	/** The messages being transferred, keyed by message ID index and
+	 * sender address (see {@link #incomingKey(int, DTNHost)}) */
+	protected MessageTable incomingMessages;
+	/** The messages this router is carrying, keyed by message ID index */
+	private MessageTable messages; 
+	/** The messages this router is carrying, oldest (by receive time) first */
+	private TreeSet<Message> messagesByAge;
+	/** The messages this router is carrying, grouped by their final
+	 * recipient (in the order they were added to the buffer) */
+	private HashMap<DTNHost, List<Message>> messagesByDestination;
+	/** Read only view of the messages in the sending queue order */
+	private List<Message> sendQueue;
+	/** The messages in the random sending queue order. Messages removed
+	 * from the buffer after the queue was shuffled stay in the list (and
+	 * are skipped) until the queue is compacted or shuffled again. */
+	private ArrayList<Message> randomQueue;
+	/** Number of removed messages in the random queue */
+	private int nrofRemovedQueued;
+	/** Number of times the order of the random queue has been changed
+	 * (other than by removing messages) */
+	private int randomQueueVersion;
+	/** Simulation time when the random sending queue was shuffled */
+	private int sendQueueTime;
+	/** Random number generator for the random sending queue order */
+	private Random queueRng;
+	/** Total size of the messages this router is carrying */
+	private long occupancy;
+	/** ID indexes of the messages this router has received as the final
+	 * recipient */
+	private BitSet deliveredMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -87,6 +118,47 @@ public abstract class MessageRouter {
 	private HashMap<String, Collection<Application>>	applications = null;
 	/** Range of host addresses that can be receivers */
 	protected int[] sinkHosts = null;
+	
+	/** ID indexes of the messages that some sink host has received */
+	private static BitSet sinkDeliveries;
+	
+	static {
+		DTNSim.registerForReset(MessageRouter.class.getCanonicalName());
+		reset();
+	}
+	
+	/** Orders messages by their receive time only */
+	private static final Comparator<Message> FIFO_ORDER =
+		new Comparator<Message>() {
+		public int compare(Message m1, Message m2) {
+			double diff = m1.getReceiveTime() - m2.getReceiveTime();
+			if (diff == 0) {
+				return 0;
+			}
+			return (diff < 0 ? -1 : 1);
+		}
+	};
+	
+	/** Orders message-connection tuples by their messages' receive time */
+	private static final Comparator<Tuple<Message, Connection>>
+		TUPLE_FIFO_ORDER = new Comparator<Tuple<Message, Connection>>() {
+		public int compare(Tuple<Message, Connection> t1,
+				Tuple<Message, Connection> t2) {
+			return FIFO_ORDER.compare(t1.getKey(), t2.getKey());
+		}
+	};
+	
+	/** Orders messages by their receive time and then by their unique id */
+	private static final Comparator<Message> RECEIVE_TIME_ORDER =
+		new Comparator<Message>() {
+		public int compare(Message m1, Message m2) {
+			double diff = m1.getReceiveTime() - m2.getReceiveTime();
+			if (diff != 0) {
+				return (diff < 0 ? -1 : 1);
+			}
+			return m1.getUniqueId() - m2.getUniqueId();
+		}
+	};
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -132,9 +204,18 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
+		this.incomingMessages = new MessageTable();
+		this.messages = new MessageTable();
+		this.messagesByAge = new TreeSet<Message>(RECEIVE_TIME_ORDER);
+		this.messagesByDestination = new HashMap<DTNHost, List<Message>>();
+		this.sendQueue = new SendQueue();
+		this.randomQueue = new ArrayList<Message>();
+		this.nrofRemovedQueued = 0;
+		this.randomQueueVersion = 0;
+		this.sendQueueTime = -1;
+		this.queueRng = new Random();
+		this.occupancy = 0;
+		this.deliveredMessages = new BitSet();
 		this.mListeners = mListeners;
 		this.host = host;
 	
@@ -163,12 +244,25 @@ public abstract class MessageRouter {
 	 * This method should be called (at least once) on every simulation
 	 * interval to update the status of transfer(s). 
 	 */
-	public void update(){
-		for (Collection<Application> apps : this.applications.values()) {
-			for (Application app : apps) {
-				app.update(this.host);
-			}
-		}
+	public void update(){
+		for (Collection<Application> apps : this.applications.values()) {
+			for (Application app : apps) {
+				app.update(this.host);
+			}
+		}
+	}
+
+	/**
+	 * Returns the next simulation time when this router must be updated
+	 * even if nothing else (e.g., a new message or connection) happens
+	 * before that. Used by the event driven update mode of the World.
+	 * This implementation returns the current time, i.e., the router is
+	 * updated on every update interval. Routers whose state changes by time
+	 * only at predictable moments can override this.
+	 * @return The time of the next required update
+	 */
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
 	}
 	
 	/**
@@ -183,7 +277,8 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	protected Message getMessage(String id) {
-		return this.messages.get(id);
+		int index = Message.lookupIdIndex(id);
+		return index < 0 ? null : this.messages.get(index);
 	}
 	
 	/**
@@ -192,7 +287,18 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	protected boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		int index = Message.lookupIdIndex(id);
+		return index >= 0 && this.messages.containsKey(index);
+	}
+	
+	/**
+	 * Checks if this router has a message with the same ID as the given
+	 * message buffered.
+	 * @param m The message
+	 * @return True if the router has message with the same id, false if not
+	 */
+	protected boolean hasMessage(Message m) {
+		return this.messages.containsKey(m.getIdIndex());
 	}
 	
 	/**
@@ -204,33 +310,48 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return this.deliveredMessages.get(m.getIdIndex());
 	}
 	
+	/**
+	 * Returns true if the given host is within the sink host range of this
+	 * router's group (setting <CODE>sinkHosts</CODE>)
+	 * @param m The message that is delivered
+	 * @param host The host to check
+	 * @return true if the host is a valid sink for the message
+	 */
 	protected boolean isValidSink(Message m, DTNHost host){
-		int sHostID = Integer.valueOf(host.toString().substring(1));
-		if (sHostID >= this.sinkHosts[0] && sHostID <= this.sinkHosts[1]){
-			return true;
-		}
-		return false;
+		return isSinkId(host.getNameId());
 	}
-	protected boolean hasAnySinkReceivedMessage(Message m){
-		List<DTNHost> allHosts = SimScenario.getInstance().getHosts();
-		//System.out.println("Host " + this.host + " msg: " + m.getId());
-		
-		for (DTNHost sHost: allHosts){
-			int sHostID = Integer.valueOf(sHost.toString().substring(1));
-			if (sHostID >= this.sinkHosts[0] && sHostID <= this.sinkHosts[1]){
-				
-				//System.out.println("Current host: " + sHostID + " messages: " + sHost.getRouter().deliveredMessages.values());
-				
-				 if( sHost.getRouter().deliveredMessages.containsKey(m.getId())){
-					 //System.out.println("Delivered: sHost " + sHostID + " msg: " + m.getId() + " " + sHost.getMessageCollection().toArray());
-					 return true;
-				 }
-			}
-		}
-		return false;
+	
+	/**
+	 * Returns true if the given host name ID (see {@link DTNHost#getNameId()})
+	 * is within the sink host range of this router's group
+	 * @param nameId The name ID to check
+	 * @return true if the ID is in the range, false if not or if no
+	 * sink hosts are defined
+	 */
+	public boolean isSinkId(int nameId) {
+		return this.sinkHosts != null && nameId >= this.sinkHosts[0] &&
+			nameId <= this.sinkHosts[1];
+	}
+	
+	/**
+	 * Returns true if a message with the same ID as the given message has
+	 * been received by any sink host of the scenario (see
+	 * {@link #isValidSink(Message, DTNHost)}).
+	 * @param m message we're interested of
+	 * @return true if some sink host has received the message
+	 */
+	protected boolean hasAnySinkReceivedMessage(Message m){
+		return sinkDeliveries.get(m.getIdIndex());
+	}
+	
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static void reset() {
+		sinkDeliveries = new BitSet();
 	}
 	
 	/**
@@ -269,17 +390,137 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-		
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 		
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
+		return (int)(this.getBufferSize() - this.occupancy);
+	}
+	
+	/**
+	 * Creates a summary vector of the IDs of the messages this router is
+	 * carrying or has received as the final recipient, i.e., the messages
+	 * it would reject as old. The vector is recorded to the run statistics.
+	 * @param fpRate Target false positive rate of the vector
+	 * @return The summary vector
+	 */
+	public SummaryVector createSummaryVector(double fpRate) {
+		SummaryVector sv = new SummaryVector(this.messages.size() + 
+				this.deliveredMessages.cardinality(), fpRate);
+		for (Message m : this.messages.values()) {
+			sv.add(m.getIdIndex());
+		}
+		for (int i = this.deliveredMessages.nextSetBit(0); i >= 0;
+				i = this.deliveredMessages.nextSetBit(i + 1)) {
+			sv.add(i);
+		}
+		sv.recordStats();
+		return sv;
+	}
+	
+	/**
+	 * Returns the messages of this router whose final recipient is the
+	 * given host, in the order they were added to the buffer. The returned
+	 * list must not be modified and it changes when the buffer changes, so
+	 * a copy should be made if messages may be added or removed while
+	 * iterating it.
+	 * @param to The final recipient
+	 * @return The messages for the host (an empty list if there are none)
+	 */
+	protected List<Message> getMessagesFor(DTNHost to) {
+		List<Message> list = this.messagesByDestination.get(to);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns the messages of this router ordered by their receive time,
+	 * oldest first. Messages with the same receive time are ordered by their
+	 * unique id. The returned set must not be modified.
+	 * @return The messages in receive time order
+	 */
+	protected TreeSet<Message> getMessagesByAge() {
+		return this.messagesByAge;
+	}
+	
+	/**
+	 * Returns the messages of this router in the order of the sending queue
+	 * mode as a read only view of the buffer, so routers can try the queue
+	 * on every update without copying or sorting the buffer. The FIFO order
+	 * is the receive time order of the buffer as such. In the random mode,
+	 * the buffer is shuffled once per simulated second and messages added
+	 * during the second are put to random places of the order. Messages
+	 * may be removed from the buffer while iterating the queue (the removed
+	 * messages that haven't been iterated yet are skipped), but in the
+	 * random mode, adding messages while iterating the queue is not allowed.
+	 * @return The messages in the sending queue order
+	 */
+	protected List<Message> getSendQueue() {
+		if (this.sendQueueMode == Q_MODE_RANDOM) {
+			int time = SimClock.getIntTime();
+			if (this.sendQueueTime != time) {
+				shuffleSendQueue(time);
+			}
+		}
+		return this.sendQueue;
+	}
+	
+	/**
+	 * Shuffles the messages of the buffer to the random queue, in place
+	 * @param time Simulation time (seed of the order)
+	 */
+	private void shuffleSendQueue(int time) {
+		this.randomQueue.clear();
+		for (Message m : this.messagesByAge) {
+			this.randomQueue.add(m);
+		}
+		this.nrofRemovedQueued = 0;
+		this.queueRng.setSeed(time);
+		Collections.shuffle(this.randomQueue, this.queueRng);
+		this.randomQueueVersion++;
+		this.sendQueueTime = time;
+	}
+	
+	/**
+	 * Puts a message added to the buffer to a random place of the random
+	 * queue (if the queue has been shuffled)
+	 * @param m The message that was added
+	 */
+	private void addToSendQueue(Message m) {
+		if (this.sendQueueMode != Q_MODE_RANDOM || this.sendQueueTime < 0) {
+			return;
+		}
+		List<Message> queue = this.randomQueue;
+		if (this.nrofRemovedQueued > queue.size() / 2) {
+			/* drop the removed messages from the queue */
+			int n = 0;
+			for (int i = 0, size = queue.size(); i < size; i++) {
+				if (isBuffered(queue.get(i))) {
+					queue.set(n++, queue.get(i));
+				}
+			}
+			queue.subList(n, queue.size()).clear();
+			this.nrofRemovedQueued = 0;
 		}
 		
-		return this.getBufferSize() - occupancy;
+		queue.add(m);
+		int last = queue.size() - 1;
+		int place = this.queueRng.nextInt(last + 1);
+		queue.set(last, queue.get(place));
+		queue.set(place, m);
+		this.randomQueueVersion++;
+	}
+	
+	/**
+	 * Returns true if the message is in the buffer (and not only a message
+	 * with the same ID)
+	 * @param m The message
+	 * @return True if the message is in the buffer
+	 */
+	private boolean isBuffered(Message m) {
+		return this.messages.get(m.getIdIndex()) == m;
 	}
 	
 	/**
@@ -393,7 +634,10 @@ public abstract class MessageRouter {
 		}
 		else if (isFirstDelivery || hasAnySinkReceivedMessage(aMessage)) {
 			//System.out.println(" Message "+ id + " delivered to " + this.host);
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.set(aMessage.getIdIndex());
+			if (isValidSink(aMessage, this.host)) {
+				sinkDeliveries.set(aMessage.getIdIndex());
+			}
 		}
 		
 		for (MessageListener ml : this.mListeners) {
@@ -412,7 +656,17 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingMessages.put(incomingKey(m.getIdIndex(), from), m);
+	}
+	
+	/**
+	 * Returns the incoming messages buffer key of a message
+	 * @param idIndex ID index of the message
+	 * @param from Who the message is from (previous hop)
+	 * @return The key
+	 */
+	private static long incomingKey(int idIndex, DTNHost from) {
+		return ((long)idIndex << 32) | (from.getAddress() & 0xFFFFFFFFL);
 	}
 	
 	/**
@@ -423,7 +677,11 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int index = Message.lookupIdIndex(id);
+		if (index < 0) {
+			return null;
+		}
+		return this.incomingMessages.remove(incomingKey(index, from));
 	}
 	
 	/**
@@ -432,8 +690,17 @@ public abstract class MessageRouter {
 	 * @param id ID of the message
 	 * @return True if such message is incoming right now
 	 */
-	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+	protected boolean isIncomingMessage(String id) {
+		int index = Message.lookupIdIndex(id);
+		if (index < 0) {
+			return false;
+		}
+		for (Message m : this.incomingMessages.values()) {
+			if (m.getIdIndex() == index) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -444,7 +711,22 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getIdIndex(), m);
+		if (old != null) {
+			this.messagesByAge.remove(old);
+			removeFromDestination(old);
+			this.occupancy -= old.getSize();
+			this.nrofRemovedQueued++;
+		}
+		this.messagesByAge.add(m);
+		List<Message> list = this.messagesByDestination.get(m.getTo());
+		if (list == null) {
+			list = new ArrayList<Message>(2);
+			this.messagesByDestination.put(m.getTo(), list);
+		}
+		list.add(m);
+		this.occupancy += m.getSize();
+		addToSendQueue(m);
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -459,10 +741,40 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	protected Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
+		int index = Message.lookupIdIndex(id);
+		if (index < 0) {
+			return null;
+		}
+		Message m = this.messages.remove(index);
+		if (m != null) {
+			this.messagesByAge.remove(m);
+			removeFromDestination(m);
+			this.occupancy -= m.getSize();
+			this.nrofRemovedQueued++;
+		}
 		return m;
 	}
 	
+	/**
+	 * Removes a buffered message from the messages-by-destination index
+	 * @param m The message to remove
+	 */
+	private void removeFromDestination(Message m) {
+		List<Message> list = this.messagesByDestination.get(m.getTo());
+		if (list == null) {
+			return;
+		}
+		for (int i = 0, n = list.size(); i < n; i++) {
+			if (list.get(i) == m) {
+				list.remove(i);
+				break;
+			}
+		}
+		if (list.isEmpty()) {
+			this.messagesByDestination.remove(m.getTo());
+		}
+	}
+	
 	/**
 	 * This method should be called (on the receiving host) when a message 
 	 * transfer was aborted.
@@ -524,36 +836,24 @@ public abstract class MessageRouter {
 	protected List sortByQueueMode(List list) {
 		switch (sendQueueMode) {
 		case Q_MODE_RANDOM:
-			Collections.shuffle(list, new Random(SimClock.getIntTime()));
+			this.queueRng.setSeed(SimClock.getIntTime());
+			Collections.shuffle(list, this.queueRng);
 			break;
 		case Q_MODE_FIFO:
-			Collections.sort(list, 
-					new Comparator() {
-				/** Compares two tuples by their messages' receiving time */
-				public int compare(Object o1, Object o2) {
-					double diff;
-					Message m1, m2;
-					
-					if (o1 instanceof Tuple) {
-						m1 = ((Tuple<Message, Connection>)o1).getKey();
-						m2 = ((Tuple<Message, Connection>)o2).getKey();
-					}
-					else if (o1 instanceof Message) {
-						m1 = (Message)o1;
-						m2 = (Message)o2;
-					}
-					else {
-						throw new SimError("Invalid type of objects in " + 
-								"the list");
-					}
-					
-					diff = m1.getReceiveTime() - m2.getReceiveTime();
-					if (diff == 0) {
-						return 0;
-					}
-					return (diff < 0 ? -1 : 1);
-				}
-			});
+			if (list.isEmpty()) {
+				break;
+			}
+			/* the element type is checked once, not on every comparison */
+			Object first = list.get(0);
+			if (first instanceof Tuple) {
+				Collections.sort(list, TUPLE_FIFO_ORDER);
+			}
+			else if (first instanceof Message) {
+				Collections.sort(list, FIFO_ORDER);
+			}
+			else {
+				throw new SimError("Invalid type of objects in the list");
+			}
 			break;
 		/* add more queue modes here */
 		default:
@@ -577,11 +877,7 @@ public abstract class MessageRouter {
 			/* return randomly (enough) but consistently -1, 0 or 1 */
 			return (m1.hashCode()/2 + m2.hashCode()/2) % 3 - 1; 
 		case Q_MODE_FIFO:
-			double diff = m1.getReceiveTime() - m2.getReceiveTime();
-			if (diff == 0) {
-				return 0;
-			}
-			return (diff < 0 ? -1 : 1);
+			return FIFO_ORDER.compare(m1, m2);
 		/* add more queue modes here */
 		default:
 			throw new SimError("Unknown queue mode " + sendQueueMode);
@@ -596,7 +892,8 @@ public abstract class MessageRouter {
 		RoutingInfo ri = new RoutingInfo(this);
 		RoutingInfo incoming = new RoutingInfo(this.incomingMessages.size() + 
 				" incoming message(s)");
-		RoutingInfo delivered = new RoutingInfo(this.deliveredMessages.size() +
+		RoutingInfo delivered = new RoutingInfo(
+				this.deliveredMessages.cardinality() +
 				" delivered message(s)");
 		
 		RoutingInfo cons = new RoutingInfo(host.getConnections().size() + 
@@ -610,8 +907,9 @@ public abstract class MessageRouter {
 			incoming.addMoreInfo(new RoutingInfo(m));
 		}
 		
-		for (Message m : this.deliveredMessages.values()) {
-			delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
+		for (int i = this.deliveredMessages.nextSetBit(0); i >= 0;
+				i = this.deliveredMessages.nextSetBit(i + 1)) {
+			delivered.addMoreInfo(new RoutingInfo(Message.getIdOfIndex(i)));
 		}
 		
 		for (Connection c : host.getConnections()) {
@@ -674,4 +972,98 @@ public abstract class MessageRouter {
 			this.getHost().toString() + " with " + getNrofMessages() 
 			+ " messages";
 	}
+	
+	/**
+	 * Read only view of the buffer in the sending queue order (see
+	 * {@link MessageRouter#getSendQueue()})
+	 */
+	private class SendQueue extends AbstractList<Message> {
+		
+		@Override
+		public int size() {
+			return messages.size();
+		}
+		
+		@Override
+		public Message get(int index) {
+			if (index >= 0) {
+				for (Message m : this) {
+					if (index-- == 0) {
+						return m;
+					}
+				}
+			}
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		
+		@Override
+		public Iterator<Message> iterator() {
+			if (sendQueueMode == Q_MODE_RANDOM) {
+				return new RandomOrderIterator();
+			}
+			return new AgeOrderIterator();
+		}
+	}
+	
+	/**
+	 * Iterator of the buffer in the receive time order. The next message is
+	 * looked up from the buffer only when it is needed, so removing messages
+	 * while iterating is safe.
+	 */
+	private class AgeOrderIterator implements Iterator<Message> {
+		private Message last = null;
+		private Message next = null;
+		
+		public boolean hasNext() {
+			if (this.next == null && !messagesByAge.isEmpty()) {
+				this.next = this.last == null ? messagesByAge.first() :
+					messagesByAge.higher(this.last);
+			}
+			return this.next != null;
+		}
+		
+		public Message next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.last = this.next;
+			this.next = null;
+			return this.last;
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Iterator of the random queue that skips the messages removed from the
+	 * buffer
+	 */
+	private class RandomOrderIterator implements Iterator<Message> {
+		private int index = 0;
+		private final int version = randomQueueVersion;
+		
+		public boolean hasNext() {
+			if (this.version != randomQueueVersion) {
+				throw new ConcurrentModificationException();
+			}
+			while (this.index < randomQueue.size() && 
+					!isBuffered(randomQueue.get(this.index))) {
+				this.index++;
+			}
+			return this.index < randomQueue.size();
+		}
+		
+		public Message next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return randomQueue.get(this.index++);
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import core.Message;
+
+/**
+ * Open addressing (linear probing) hash table of messages keyed by
+ * primitive long keys. Used by the routers instead of string keyed hash maps
+ * so that looking up a buffered message needs neither string hashing nor
+ * key objects. The keys are usually message ID indexes
+ * (see {@link Message#getIdIndex()}).
+ */
+public class MessageTable {
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Message[] values;
+	private int size;
+	/** number of structural modifications (for fail-fast iteration) */
+	private int modCount;
+	private Collection<Message> valuesView;
+
+	/**
+	 * Creates an empty table
+	 */
+	public MessageTable() {
+		this.keys = new long[MIN_CAPACITY];
+		this.values = new Message[MIN_CAPACITY];
+	}
+
+	/**
+	 * Returns the message stored with the key
+	 * @param key The key
+	 * @return The message or null if there's no message for the key
+	 */
+	public Message get(long key) {
+		int i = find(key);
+		return i < 0 ? null : this.values[i];
+	}
+
+	/**
+	 * Returns true if the table has a message for the key
+	 * @param key The key
+	 * @return True if the key is in the table
+	 */
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Stores a message with the key, replacing the old message of the key
+	 * @param key The key
+	 * @param m The message
+	 * @return The replaced message or null if there was none
+	 */
+	public Message put(long key, Message m) {
+		int mask = this.keys.length - 1;
+		int i = slot(key, mask);
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) {
+				Message old = this.values[i];
+				this.values[i] = m;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		this.keys[i] = key;
+		this.values[i] = m;
+		this.size++;
+		this.modCount++;
+		if (this.size * 2 > this.keys.length) {
+			resize(this.keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the message of the key
+	 * @param key The key
+	 * @return The removed message or null if there was none
+	 */
+	public Message remove(long key) {
+		int i = find(key);
+		if (i < 0) {
+			return null;
+		}
+		Message old = this.values[i];
+
+		/* shift the following entries of the probe sequence backwards so
+		 * that no tombstones are needed */
+		int mask = this.keys.length - 1;
+		int hole = i;
+		int j = (i + 1) & mask;
+		while (this.values[j] != null) {
+			int home = slot(this.keys[j], mask);
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				this.keys[hole] = this.keys[j];
+				this.values[hole] = this.values[j];
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		this.values[hole] = null;
+		this.size--;
+		this.modCount++;
+		return old;
+	}
+
+	/**
+	 * Returns the number of messages in the table
+	 * @return The number of messages
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a (read only) collection view of the messages. The view's
+	 * iterators fail if the table is modified during the iteration.
+	 * @return The messages in the table
+	 */
+	public Collection<Message> values() {
+		if (this.valuesView == null) {
+			this.valuesView = new AbstractCollection<Message>() {
+				@Override
+				public Iterator<Message> iterator() {
+					return new ValueIterator();
+				}
+
+				@Override
+				public int size() {
+					return MessageTable.this.size;
+				}
+			};
+		}
+		return this.valuesView;
+	}
+
+	/**
+	 * Returns the index of the key in the table or -1 if it's not there
+	 */
+	private int find(long key) {
+		int mask = this.keys.length - 1;
+		int i = slot(key, mask);
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the home slot of a key
+	 */
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * Rehashes all the entries to tables of the new capacity
+	 */
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		Message[] oldValues = this.values;
+		this.keys = new long[capacity];
+		this.values = new Message[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i], mask);
+				while (this.values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the occupied slots of the table
+	 */
+	private class ValueIterator implements Iterator<Message> {
+		private final int expectedModCount = modCount;
+		private int next = advance(0);
+
+		private int advance(int from) {
+			while (from < values.length && values[from] == null) {
+				from++;
+			}
+			return from;
+		}
+
+		public boolean hasNext() {
+			return this.next < values.length;
+		}
+
+		public Message next() {
+			if (modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (this.next >= values.length) {
+				throw new NoSuchElementException();
+			}
+			Message m = values[this.next];
+			this.next = advance(this.next + 1);
+			return m;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
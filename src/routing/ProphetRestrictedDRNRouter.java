@@ -12,6 +12,7 @@ import java.util.List;
 //import routing.ProphetRouter.TupleComparator;
 import core.Connection;
 import core.DTNHost;
+import core.HostRole;
 import core.Message;
 import core.Settings;
 import core.Tuple;
@@ -21,6 +22,14 @@ import core.Tuple;
  * connections at a time.
  */
 public class ProphetRestrictedDRNRouter extends ProphetRouter {
+	/** Role pairs that may forward upstream and downstream messages */
+	private static final RolePermissions PERMISSIONS = new RolePermissions()
+		.allowUpstream(HostRole.DATA_MULE, HostRole.COORDINATION_CENTER)
+		.allowUpstream(HostRole.SURVIVOR, HostRole.DATA_MULE)
+		.allowUpstream(HostRole.SURVIVOR, HostRole.SURVIVOR)
+		.allowDownstream(HostRole.COORDINATION_CENTER, HostRole.DATA_MULE)
+		.allowDownstream(HostRole.DATA_MULE, HostRole.SURVIVOR)
+		.allowDownstream(HostRole.SURVIVOR, HostRole.SURVIVOR);
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -68,7 +77,7 @@ public class ProphetRestrictedDRNRouter extends ProphetRouter {
 			
 			for (Message m : msgCollection) {
 				boolean canMsgBeSent = shouldMessageBeSent(m,con);
-				if (canMsgBeSent && othRouter.hasMessage(m.getId())) {
+				if (canMsgBeSent && othRouter.hasMessage(m)) {
 					continue; // skip messages that the other one has
 				}
 				if (canMsgBeSent && othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
@@ -87,38 +96,16 @@ public class ProphetRestrictedDRNRouter extends ProphetRouter {
 		return tryMessagesForConnected(messages);	// try to send messages
 	}
 	
+	/**
+	 * Returns true if the roles of this host and the other host of the
+	 * connection allow forwarding the message (see {@link RolePermissions})
+	 * @param m The message
+	 * @param con The connection the message would be sent over
+	 * @return True if the message may be sent over the connection
+	 */
 	protected boolean shouldMessageBeSent(Message m, Connection con) {
-			boolean canMsgBeSent= false;
-			canMsgBeSent = false;
-			DTNHost host, otherHost;
-			host = getHost();
-			otherHost = con.getOtherNode(getHost());
-			String sHost, sOtherHost;
-			sHost = host.toString();
-			sOtherHost = otherHost.toString(); 
-			
-			//System.out.println("The message " + m.toString() +" can be transferred between "+sHost+"  -  "+sOtherHost);
-			
-			//from DTN nodes to relief center
-			if(m.toString().startsWith("M")){
-					if(	(sHost.startsWith("CD") && sOtherHost.startsWith("CS"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("CD"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("n"))){
-						//System.out.println("The message " + m.toString() +" is sent from "+sHost+" to "+sOtherHost);
-						canMsgBeSent =true;
-					
-				}
-			}
-			//from relief center to DTN nodes
-			if(m.toString().startsWith("N")){
-				if(	(sHost.startsWith("CS") && sOtherHost.startsWith("CD"))||
-						(sHost.startsWith("CD")	&&  sOtherHost.startsWith("n"))||
-						(sHost.startsWith("n") && sOtherHost.startsWith("n"))){
-						//System.out.println("The message " + m.toString() +" is sent from "+sHost+" to "+sOtherHost);
-						canMsgBeSent =true;
-						}
-			}
-		return canMsgBeSent;	
+		return PERMISSIONS.canSend(m, getHost().getRole(),
+				con.getOtherNode(getHost()).getRole());
 	}
 	
 
@@ -95,6 +95,7 @@ public class ProphetRouter extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		updatePeerSummary(con);
 		if (con.isUp()) {
 			DTNHost otherHost = con.getOtherNode(getHost());
 			updateDeliveryPredFor(otherHost);
@@ -224,7 +225,7 @@ public class ProphetRouter extends ActiveRouter {
 			}
 			
 			for (Message m : msgCollection) {
-				if (othRouter.hasMessage(m.getId())) {
+				if (othRouter.hasMessage(m)) {
 					continue; // skip messages that the other one has
 				}
 				if (othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
@@ -137,6 +137,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		updatePeerSummary(con);
 		if (con.isUp()) {
 			DTNHost otherHost = con.getOtherNode(getHost());
 			if (updateIET(otherHost)) {
@@ -434,7 +435,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 			}
 
 			for (Message m : msgCollection) {
-				if (othRouter.hasMessage(m.getId())) {
+				if (othRouter.hasMessage(m)) {
 					continue; // skip messages that the other one has
 				}
 				if (othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import core.HostRole;
+import core.Message;
+
+/**
+ * Role-pair forwarding rules of the restricted disaster response network
+ * routers. Messages whose ID starts with {@value #UPSTREAM_PREFIX} travel
+ * upstream (from the survivors towards the relief center) and messages whose
+ * ID starts with {@value #DOWNSTREAM_PREFIX} travel downstream. Both
+ * directions have a table of the (sender, receiver) role pairs that may
+ * forward them, so checking a transfer is a single array lookup.
+ */
+public class RolePermissions {
+	/** ID prefix of the messages sent towards the relief center */
+	public static final String UPSTREAM_PREFIX = "M";
+	/** ID prefix of the messages sent from the relief center */
+	public static final String DOWNSTREAM_PREFIX = "N";
+
+	private static final int NROF_ROLES = HostRole.values().length;
+
+	private final boolean[][] upstream;
+	private final boolean[][] downstream;
+
+	/**
+	 * Creates a permission table where no role pair is allowed to forward
+	 */
+	public RolePermissions() {
+		this.upstream = new boolean[NROF_ROLES][NROF_ROLES];
+		this.downstream = new boolean[NROF_ROLES][NROF_ROLES];
+	}
+
+	/**
+	 * Allows upstream messages to be forwarded from a role to another
+	 * @param from Role of the sending host
+	 * @param to Role of the receiving host
+	 * @return This table (for chaining)
+	 */
+	public RolePermissions allowUpstream(HostRole from, HostRole to) {
+		this.upstream[from.ordinal()][to.ordinal()] = true;
+		return this;
+	}
+
+	/**
+	 * Allows downstream messages to be forwarded from a role to another
+	 * @param from Role of the sending host
+	 * @param to Role of the receiving host
+	 * @return This table (for chaining)
+	 */
+	public RolePermissions allowDownstream(HostRole from, HostRole to) {
+		this.downstream[from.ordinal()][to.ordinal()] = true;
+		return this;
+	}
+
+	/**
+	 * Returns true if the message may be forwarded between hosts of the
+	 * given roles. Messages that are neither upstream nor downstream are
+	 * never forwarded.
+	 * @param m The message
+	 * @param from Role of the sending host
+	 * @param to Role of the receiving host
+	 * @return True if the transfer is allowed
+	 */
+	public boolean canSend(Message m, HostRole from, HostRole to) {
+		String id = m.getId();
+		if (id.startsWith(UPSTREAM_PREFIX)) {
+			return this.upstream[from.ordinal()][to.ordinal()];
+		}
+		if (id.startsWith(DOWNSTREAM_PREFIX)) {
+			return this.downstream[from.ordinal()][to.ordinal()];
+		}
+		return false;
+	}
+}
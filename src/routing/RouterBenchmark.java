@@ -0,0 +1,441 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import input.NeighborListReader;
+import interfaces.ConnectivityGrid;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import report.StreamingStats;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Benchmark of the operations that the routers run on every update. The
+ * benchmark generates a static scenario: a grid of hosts where every host
+ * is in range of the hosts next to it, a neighbor list file with the grid
+ * neighbors (and one distant neighbor) of every host in every time slot,
+ * and messages that are preloaded to the buffers of all hosts. Since every
+ * host already has every message, the routers try their whole send queues
+ * on every connection but never start a transfer, so the state stays the
+ * same from one iteration to the next. The operations are timed in
+ * separate loops, each with warm up iterations and measured iterations:
+ * <UL>
+ * <LI>the neighbor list lookups of all hosts
+ * ({@link NeighborListReader#getNeighborList(String, int)})</LI>
+ * <LI>iterating the send queue ({@link MessageRouter#getSendQueue()}) and
+ * ordering a list of the buffered messages
+ * ({@link MessageRouter#sortByQueueMode(List)}) of all hosts, one simulated
+ * second apart so that the random queue mode reshuffles every iteration</LI>
+ * <LI>trying all messages to all connections of all hosts
+ * ({@link ActiveRouter#tryAllMessagesToAllConnections()})</LI>
+ * <LI>the connectivity grid lookups of the interfaces of all hosts
+ * ({@link ConnectivityGrid#getNearInterfaces(NetworkInterface, List)})</LI>
+ * <LI>whole world updates ({@link World#update()})</LI>
+ * </UL>
+ * The times of the iterations are reported in microseconds. Usage:<BR>
+ * <CODE>java routing.RouterBenchmark [nrofHosts [nrofMessages [warmup
+ * [iterations [router]]]]] [setting=value ...]</CODE><BR>
+ * where the optional <CODE>setting=value</CODE> arguments are added to the
+ * generated settings (e.g. <CODE>Group.sendQueue=2</CODE>). The benchmark
+ * should be run in the directory of the simulator, since the default
+ * settings file (if any) is read too. The end-to-end cost of the updates
+ * of a whole simulation can be measured with {@link report.UpdateTimeReport}.
+ */
+public class RouterBenchmark {
+	/** Default number of hosts */
+	public static final int DEF_NROF_HOSTS = 300;
+	/** Default number of preloaded messages */
+	public static final int DEF_NROF_MESSAGES = 100;
+	/** Default number of warm up iterations of every loop */
+	public static final int DEF_WARMUP = 50;
+	/** Default number of measured iterations of every loop */
+	public static final int DEF_ITERATIONS = 200;
+	/** Default router */
+	public static final String DEF_ROUTER = "EdgeRewiringRouter";
+
+	/** Distance of the hosts next to each other on the grid (meters) */
+	private static final int GRID_SPACING = 40;
+	/** Transmit range: the hosts next to each other are in range, the
+	 * diagonal ones are not */
+	private static final int TRANSMIT_RANGE = 50;
+	/** Length of the time slots of the neighbor lists (seconds) */
+	private static final int SAMPLING_INTERVAL = 600;
+	/** Number of time slots in the neighbor list file */
+	private static final int NROF_SLOTS = 10;
+	private static final int END_TIME = NROF_SLOTS * SAMPLING_INTERVAL;
+	/** Size of the preloaded messages (bytes) */
+	private static final int MESSAGE_SIZE = 1000;
+	/** Host group id, i.e., prefix of the host names */
+	private static final String GROUP_ID = "n";
+
+	private int nrofHosts;
+	private int nrofMessages;
+	private int warmup;
+	private int iterations;
+	private String router;
+	private List<String> extraSettings;
+
+	private File dir;
+	private File neighborListFile;
+	private World world;
+	private List<DTNHost> hosts;
+	/** sum of the results of the timed operations, so that they are not
+	 * optimized away */
+	private long check;
+
+	/**
+	 * A timed operation
+	 */
+	private static abstract class Task {
+		/**
+		 * Runs the operation once
+		 * @param iteration Number of the iteration
+		 */
+		public abstract void run(int iteration);
+	}
+
+	/**
+	 * Constructor.
+	 * @param nrofHosts Number of hosts on the grid
+	 * @param nrofMessages Number of messages preloaded to every host
+	 * @param warmup Number of warm up iterations of every loop
+	 * @param iterations Number of measured iterations of every loop
+	 * @param router Name of the router class
+	 * @param extraSettings Additional setting lines for the scenario
+	 */
+	public RouterBenchmark(int nrofHosts, int nrofMessages, int warmup,
+			int iterations, String router, List<String> extraSettings) {
+		this.nrofHosts = nrofHosts;
+		this.nrofMessages = nrofMessages;
+		this.warmup = warmup;
+		this.iterations = iterations;
+		this.router = router;
+		this.extraSettings = extraSettings;
+		this.check = 0;
+	}
+
+	/**
+	 * Returns the number of hosts on one row of the grid
+	 */
+	private int getRowLength() {
+		return (int)Math.ceil(Math.sqrt(this.nrofHosts));
+	}
+
+	/**
+	 * Generates the input files and creates the scenario
+	 * @throws IOException if the input files couldn't be written
+	 */
+	public void init() throws IOException {
+		this.dir = File.createTempFile("benchmark", "");
+		if (!this.dir.delete() || !this.dir.mkdir()) {
+			throw new IOException("Couldn't create directory " + this.dir);
+		}
+		this.dir.deleteOnExit();
+
+		File movementFile = createFile("positions.txt");
+		writeMovementFile(movementFile);
+		this.neighborListFile = createFile("neighbors.txt");
+		writeNeighborListFile(this.neighborListFile);
+		File settingsFile = createFile("settings.txt");
+		writeSettingsFile(settingsFile, movementFile);
+
+		Settings.init(settingsFile.getPath());
+		this.world = SimScenario.getInstance().getWorld();
+		this.hosts = this.world.getHosts();
+
+		preloadMessages();
+		NeighborListReader reader =
+			NeighborListReader.getReader(this.neighborListFile.getPath());
+		for (DTNHost host : this.hosts) {
+			/* routers that don't read the neighbor lists themselves only
+			 * send to the neighbors of the list the host has */
+			host.setNeighborList(reader.getNeighborList(host.toString(), 0));
+		}
+		this.world.update(); /* creates the connections */
+	}
+
+	/**
+	 * Creates a file in the directory of the generated files
+	 */
+	private File createFile(String name) {
+		File f = new File(this.dir, name);
+		f.deleteOnExit();
+		return f;
+	}
+
+	/**
+	 * Writes the host positions (a grid) in the format of
+	 * {@link movement.ExternalMovement}. All positions are given at the
+	 * start and at the end of the simulation, so the hosts don't move.
+	 */
+	private void writeMovementFile(File f) throws IOException {
+		int rowLength = getRowLength();
+		int size = (rowLength + 1) * GRID_SPACING;
+		PrintWriter out = new PrintWriter(new FileWriter(f));
+		out.println("0 " + END_TIME + " 0 " + size + " 0 " + size);
+		for (int time = 0; time <= END_TIME; time += END_TIME) {
+			for (int i = 0; i < this.nrofHosts; i++) {
+				out.println(time + " " + i + " " +
+						(i % rowLength + 1) * GRID_SPACING + " " +
+						(i / rowLength + 1) * GRID_SPACING);
+			}
+		}
+		out.close();
+	}
+
+	/**
+	 * Writes the neighbor lists in the format of {@link NeighborListReader}:
+	 * in every time slot, the neighbors of a host are the hosts next to it
+	 * on the grid and one distant host that changes from slot to slot.
+	 */
+	private void writeNeighborListFile(File f) throws IOException {
+		int rowLength = getRowLength();
+		int[] offsets = {-rowLength, -1, 1, rowLength};
+		PrintWriter out = new PrintWriter(new FileWriter(f));
+		out.println("0 " + END_TIME);
+		for (int slot = 0; slot < NROF_SLOTS; slot++) {
+			for (int i = 0; i < this.nrofHosts; i++) {
+				StringBuilder sb = new StringBuilder();
+				sb.append(slot * SAMPLING_INTERVAL).append(' ').append(i);
+				for (int offset : offsets) {
+					int j = i + offset;
+					if (j >= 0 && j < this.nrofHosts &&
+							(offset == -rowLength || offset == rowLength ||
+							j / rowLength == i / rowLength)) {
+						sb.append(' ').append(j);
+					}
+				}
+				sb.append(' ').append((i + (slot + 2) * rowLength + slot) %
+						this.nrofHosts);
+				out.println(sb.toString());
+			}
+		}
+		out.close();
+	}
+
+	/**
+	 * Writes the settings of the scenario
+	 */
+	private void writeSettingsFile(File f, File movementFile)
+			throws IOException {
+		int size = (getRowLength() + 1) * GRID_SPACING;
+		PrintWriter out = new PrintWriter(new FileWriter(f));
+		out.println("Scenario.name = benchmark");
+		out.println("Scenario.simulateConnections = true");
+		out.println("Scenario.updateInterval = 0.1");
+		out.println("Scenario.endTime = " + END_TIME);
+		out.println("Scenario.nrofHostGroups = 1");
+		out.println("btInterface.type = SimpleBroadcastInterface");
+		out.println("btInterface.transmitSpeed = 250k");
+		out.println("btInterface.transmitRange = " + TRANSMIT_RANGE);
+		out.println("ExternalMovement.file = " + movementFile.getPath());
+		out.println("Group.movementModel = ExternalMovement");
+		out.println("Group.router = " + this.router);
+		out.println("Group.neighborListFile = " +
+				this.neighborListFile.getPath());
+		out.println("Group.samplingInterval = " + SAMPLING_INTERVAL);
+		out.println("Group.lastCCID = 0");
+		out.println("Group.bufferSize = 1000M");
+		out.println("Group.waitTime = 0, 0");
+		out.println("Group.speed = 0, 0");
+		out.println("Group.nrofInterfaces = 1");
+		out.println("Group.interface1 = btInterface");
+		out.println("Group.initialEnergy = 200");
+		out.println("Group.scanEnergy = 0");
+		out.println("Group.transmitEnergy = 0");
+		out.println("Group.scanInterval = 0");
+		out.println("Group.isEnergyConstrained = 0");
+		out.println("Group.deleteDelivered = false");
+		out.println("Group.sinkHosts = 0, 30");
+		out.println("Group.nrofHosts = " + this.nrofHosts);
+		out.println("Group1.groupID = " + GROUP_ID);
+		out.println("Events.nrof = 0");
+		out.println("MovementModel.rngSeed = 1");
+		out.println("MovementModel.worldSize = " + size + ", " + size);
+		out.println("MovementModel.warmup = 0");
+		out.println("Optimization.cellSizeMult = 5");
+		out.println("Optimization.randomizeUpdateOrder = true");
+		for (String setting : this.extraSettings) {
+			out.println(setting);
+		}
+		out.close();
+	}
+
+	/**
+	 * Creates the messages and puts a copy of every message to the buffer
+	 * of every host
+	 */
+	private void preloadMessages() {
+		for (int i = 0; i < this.nrofMessages; i++) {
+			DTNHost from = this.hosts.get(i % this.nrofHosts);
+			DTNHost to = this.hosts.get((i * 7 + 1) % this.nrofHosts);
+			Message m = new Message(from, to, "M" + i, MESSAGE_SIZE);
+			for (DTNHost host : this.hosts) {
+				host.getRouter().createNewMessage(m.replicate());
+			}
+		}
+	}
+
+	/**
+	 * Runs the warm up and the measured iterations of a task and prints the
+	 * statistics of the measured iterations
+	 * @param name Name of the task
+	 * @param task The task
+	 */
+	private void measure(String name, Task task) {
+		for (int i = 0; i < this.warmup; i++) {
+			task.run(i);
+		}
+
+		StreamingStats stats = new StreamingStats();
+		for (int i = 0; i < this.iterations; i++) {
+			long start = System.nanoTime();
+			task.run(this.warmup + i);
+			stats.add((System.nanoTime() - start) / 1000.0);
+		}
+
+		System.out.println(String.format("%-24s %10.1f %10.1f %10.1f %10.1f",
+				name, stats.getAverage(), stats.getMedian(),
+				stats.getQuantile(0.99), stats.getMax()));
+	}
+
+	/**
+	 * Runs all the timed loops
+	 */
+	public void run() {
+		System.out.println("Router benchmark: " + this.nrofHosts + " hosts, " +
+				this.nrofMessages + " messages, " + this.router + ", " +
+				this.iterations + " iterations (microseconds per iteration)");
+		System.out.println(String.format("%-24s %10s %10s %10s %10s",
+				"operation", "avg", "median", "99%", "max"));
+
+		final NeighborListReader reader =
+			NeighborListReader.getReader(this.neighborListFile.getPath());
+		measure("neighbor_list", new Task() {
+			public void run(int iteration) {
+				int time = (iteration % NROF_SLOTS) * SAMPLING_INTERVAL;
+				for (DTNHost host : hosts) {
+					check += reader.getNeighborList(host.toString(),
+							time).size();
+				}
+			}
+		});
+
+		final SimClock clock = SimClock.getInstance();
+		final double startTime = SimClock.getTime();
+		final List<List<Message>> lists = new ArrayList<List<Message>>();
+		for (int i = 0; i < this.nrofHosts; i++) {
+			lists.add(new ArrayList<Message>());
+		}
+		measure("send_queue", new Task() {
+			public void run(int iteration) {
+				clock.setTime(startTime + iteration + 1);
+				for (int i = 0; i < nrofHosts; i++) {
+					MessageRouter r = hosts.get(i).getRouter();
+					for (Message m : r.getSendQueue()) {
+						check += m.getSize();
+					}
+					List<Message> list = lists.get(i);
+					list.clear();
+					list.addAll(r.getMessagesByAge());
+					r.sortByQueueMode(list);
+				}
+			}
+		});
+		clock.setTime(startTime);
+
+		if (this.hosts.get(0).getRouter() instanceof ActiveRouter) {
+			measure("try_all_messages", new Task() {
+				public void run(int iteration) {
+					for (DTNHost host : hosts) {
+						Connection c = ((ActiveRouter)host.getRouter()).
+							tryAllMessagesToAllConnections();
+						if (c != null) {
+							check++;
+						}
+					}
+				}
+			});
+		}
+
+		final List<NetworkInterface> near = new ArrayList<NetworkInterface>();
+		measure("near_interfaces", new Task() {
+			public void run(int iteration) {
+				for (DTNHost host : hosts) {
+					for (NetworkInterface ni : host.getInterfaces()) {
+						ConnectivityGrid grid =
+							ConnectivityGrid.ConnectivityGridFactory(
+								ni.getInterfaceType().hashCode(),
+								ni.getTransmitRange());
+						near.clear();
+						grid.getNearInterfaces(ni, near);
+						check += near.size();
+					}
+				}
+			}
+		});
+
+		measure("world_update", new Task() {
+			public void run(int iteration) {
+				world.update();
+			}
+		});
+
+		System.out.println("check: " + this.check);
+	}
+
+	/**
+	 * Runs the benchmark
+	 * @param args The command line arguments (see the class documentation)
+	 */
+	public static void main(String[] args) {
+		int[] values = {DEF_NROF_HOSTS, DEF_NROF_MESSAGES, DEF_WARMUP,
+				DEF_ITERATIONS};
+		String router = DEF_ROUTER;
+		List<String> extraSettings = new ArrayList<String>();
+		int nrofValues = 0;
+		try {
+			for (String arg : args) {
+				if (arg.contains("=")) {
+					extraSettings.add(arg);
+				}
+				else if (nrofValues < values.length) {
+					values[nrofValues++] = Integer.parseInt(arg);
+				}
+				else {
+					router = arg;
+				}
+			}
+		} catch (NumberFormatException e) {
+			System.err.println("Usage: java routing.RouterBenchmark " +
+					"[nrofHosts [nrofMessages [warmup [iterations " +
+					"[router]]]]] [setting=value ...]");
+			System.exit(-1);
+		}
+
+		RouterBenchmark benchmark = new RouterBenchmark(values[0], values[1],
+				values[2], values[3], router, extraSettings);
+		try {
+			benchmark.init();
+		} catch (IOException e) {
+			System.err.println("Couldn't create the scenario: " + e);
+			System.exit(-1);
+		}
+		benchmark.run();
+	}
+}
@@ -210,8 +210,8 @@ public class SmartEpidemicRouter extends RestrictedEpidemicRouter
 	
 	/**
 	 * Tries to send all messages that this router is carrying to all
-	 * connections this node has. Messages are ordered using the 
-	 * {@link MessageRouter#sortByQueueMode(List)}. See 
+	 * connections this node has. Messages are ordered by the sending
+	 * queue ({@link MessageRouter#getSendQueue()}). See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
@@ -223,11 +223,7 @@ public class SmartEpidemicRouter extends RestrictedEpidemicRouter
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
-		this.sortByQueueMode(messages);
-		
-		return tryMessagesToConnections(messages, connections);
+		return tryMessagesToConnections(getSendQueue(), connections);
 	}
 	
 	@Override
@@ -257,4 +253,9 @@ public class SmartEpidemicRouter extends RestrictedEpidemicRouter
 		// TODO Auto-generated method stub
 		this.isRelayExemplar = (Boolean)newValue;
 	}
+
+	@Override
+	public void moduleDoubleChanged(String key, double newValue) {
+		moduleValueChanged(key, newValue);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.BitSet;
+
+import core.DTNSim;
+
+/**
+ * Bloom filter summary of the message IDs a router has (buffered or
+ * delivered). Routers exchange summary vectors when a connection comes up
+ * so that they don't have to offer messages the other end would reject
+ * as old. Like any Bloom filter, the vector has no false negatives but may
+ * claim to contain IDs it doesn't; the filter is sized for the given false
+ * positive rate. IDs are message ID indexes (see
+ * {@link core.Message#getIdIndex()}).
+ * <P>
+ * Since the vector is a snapshot taken when the connection came up, the
+ * router can also mark the IDs it learns the other end has during the
+ * contact (see {@link #addKnown(int)}); those are kept in an exact set next
+ * to the filter so that they don't increase the false positive rate.
+ * </P>
+ * <P>
+ * The class also collects statistics of all the vectors created in the run
+ * (see {@link report.SummaryVectorReport}).
+ * </P>
+ */
+public class SummaryVector {
+	private static final double LN2 = Math.log(2);
+
+	private final long[] bits;
+	private final int nrofBits;
+	private final int nrofHashes;
+	private int nrofEntries;
+	/** IDs learned after the vector was created (or null if none) */
+	private BitSet known;
+
+	/** number of summary vectors created */
+	private static int nrofVectors;
+	/** total size of the created vectors (bits) */
+	private static long totalBits;
+	/** total number of IDs in the created vectors */
+	private static long totalEntries;
+	/** sum of the expected false positive rates of the created vectors */
+	private static double totalFpRate;
+	/** number of transfers skipped because of the vectors */
+	private static long nrofSkipped;
+
+	static {
+		DTNSim.registerForReset(SummaryVector.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Creates an empty summary vector
+	 * @param expectedEntries How many IDs the vector is sized for
+	 * @param fpRate The target false positive rate (0 < fpRate < 1)
+	 */
+	public SummaryVector(int expectedEntries, double fpRate) {
+		int n = Math.max(expectedEntries, 1);
+		int m = (int)Math.ceil(-n * Math.log(fpRate) / (LN2 * LN2));
+		m = Math.max(64, (m + 63) & ~63);
+		this.nrofBits = m;
+		this.nrofHashes = Math.max(1, (int)Math.round((double)m / n * LN2));
+		this.bits = new long[m / 64];
+		this.nrofEntries = 0;
+	}
+
+	/**
+	 * Resets the run statistics
+	 */
+	public static void reset() {
+		nrofVectors = 0;
+		totalBits = 0;
+		totalEntries = 0;
+		totalFpRate = 0;
+		nrofSkipped = 0;
+	}
+
+	/**
+	 * Adds an ID to the vector
+	 * @param idIndex The message ID index
+	 */
+	public void add(int idIndex) {
+		int h1 = hash1(idIndex);
+		int h2 = hash2(idIndex);
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.nrofBits;
+			this.bits[bit >>> 6] |= 1L << bit;
+		}
+		this.nrofEntries++;
+	}
+
+	/**
+	 * Marks an ID as known to be had by the summarized router, e.g., because
+	 * it rejected the message as old or the message was sent to it
+	 * @param idIndex The message ID index
+	 */
+	public void addKnown(int idIndex) {
+		if (this.known == null) {
+			this.known = new BitSet();
+		}
+		this.known.set(idIndex);
+	}
+
+	/**
+	 * Returns true if the ID may have been added to the vector, or is known
+	 * (see {@link #addKnown(int)}). False means that the ID certainly wasn't
+	 * added.
+	 * @param idIndex The message ID index
+	 * @return True if the vector (probably) contains the ID
+	 */
+	public boolean mightContain(int idIndex) {
+		if (this.known != null && this.known.get(idIndex)) {
+			return true;
+		}
+		int h1 = hash1(idIndex);
+		int h2 = hash2(idIndex);
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.nrofBits;
+			if ((this.bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the vector to the run statistics. Should be called once the
+	 * vector is complete.
+	 */
+	public void recordStats() {
+		nrofVectors++;
+		totalBits += this.nrofBits;
+		totalEntries += this.nrofEntries;
+		totalFpRate += getFalsePositiveRate();
+	}
+
+	/**
+	 * Records a transfer that was skipped because of a summary vector
+	 */
+	public static void recordSkipped() {
+		nrofSkipped++;
+	}
+
+	/**
+	 * Returns the size of the vector
+	 * @return The size in bits
+	 */
+	public int getNrofBits() {
+		return this.nrofBits;
+	}
+
+	/**
+	 * Returns the number of hash functions the vector uses
+	 * @return The number of hash functions
+	 */
+	public int getNrofHashes() {
+		return this.nrofHashes;
+	}
+
+	/**
+	 * Returns the number of IDs added to the vector
+	 * @return The number of IDs
+	 */
+	public int getNrofEntries() {
+		return this.nrofEntries;
+	}
+
+	/**
+	 * Returns the expected false positive rate of the vector with its
+	 * current number of IDs
+	 * @return The expected false positive rate
+	 */
+	public double getFalsePositiveRate() {
+		return Math.pow(1 - Math.exp(-(double)this.nrofHashes *
+				this.nrofEntries / this.nrofBits), this.nrofHashes);
+	}
+
+	/**
+	 * Returns the number of summary vectors created in this run
+	 * @return The number of vectors
+	 */
+	public static int getNrofVectors() {
+		return nrofVectors;
+	}
+
+	/**
+	 * Returns the total size of the summary vectors created in this run
+	 * @return The total size in bits
+	 */
+	public static long getTotalBits() {
+		return totalBits;
+	}
+
+	/**
+	 * Returns the total number of IDs in the summary vectors of this run
+	 * @return The total number of IDs
+	 */
+	public static long getTotalEntries() {
+		return totalEntries;
+	}
+
+	/**
+	 * Returns the sum of the expected false positive rates of the summary
+	 * vectors created in this run
+	 * @return The sum of the rates
+	 */
+	public static double getTotalFalsePositiveRate() {
+		return totalFpRate;
+	}
+
+	/**
+	 * Returns the number of transfers skipped in this run because the
+	 * receiver's summary vector contained the message
+	 * @return The number of skipped transfers
+	 */
+	public static long getNrofSkipped() {
+		return nrofSkipped;
+	}
+
+	private static int hash1(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int hash2(int key) {
+		int h = (key + 0x7F4A7C15) * 0x85EBCA6B;
+		h ^= h >>> 13;
+		return h | 1; /* odd, so that the probes don't repeat */
+	}
+}
@@ -33,6 +33,7 @@ public class DTNSimTextUI extends DTNSimUI {
 				return;
 			}
 			simTime = SimClock.getTime();
+			checkHorizons(simTime);
 			this.update(false);
 		}
 		
@@ -58,6 +58,8 @@ public abstract class DTNSimUI {
 	protected SimScenario scen;
 	/** simtime of last UI update */
 	protected double lastUpdate;
+	/** index of the next end time horizon to write report snapshots for */
+	private int nextHorizon;
 	
 	/**
 	 * Constructor.
@@ -67,6 +69,7 @@ public abstract class DTNSimUI {
 		this.reports = new Vector<Report>();
 		this.simDone = false;
 		this.simCancelled = false;
+		this.nextHorizon = 0;
 	}
 	
 	/**
@@ -132,6 +135,33 @@ public abstract class DTNSimUI {
 		}
 	}
 	
+	/**
+	 * Makes all reports write snapshots for the end time horizons of a
+	 * multi-horizon run (see {@link SimScenario#MULTI_HORIZON_S}) that the
+	 * simulation has reached. Should be called after every world update.
+	 * @param simTime Current simulation time
+	 */
+	protected void checkHorizons(double simTime) {
+		String[] horizons = scen.getHorizons();
+		double[] times = scen.getHorizonTimes();
+		String endTimeS = SimScenario.SCENARIO_NS + "." +
+			SimScenario.END_TIME_S;
+		
+		while (this.nextHorizon < horizons.length && 
+				simTime >= times[this.nextHorizon]) {
+			Settings.setOverride(endTimeS, horizons[this.nextHorizon]);
+			try {
+				for (Report r : this.reports) {
+					r.horizonDone();
+				}
+			}
+			finally {
+				Settings.setOverride(endTimeS, scen.getEndTimeValue());
+			}
+			this.nextHorizon++;
+		}
+	}
+	
 	/**
 	 * Adds a new report for simulator
 	 * @param r Report to add